@@ -0,0 +1,25 @@
+#!/bin/bash
+
+# Compiles and runs the command server load test. Any arguments are passed
+# to the load test, for example:
+#
+#   ./run-loadtest.sh clients=100 commands=500 mix="STATUS:9,ENABLEAPI:1"
+#
+# IBC_CLASSPATH must refer to IBC.jar or to a directory containing the
+# compiled IBC classes: by default the classes compiled by the Ant build
+# (target/classes in the root of the repository) are used.
+
+HERE="$(cd "$(dirname "$0")" && pwd)"
+IBC_CLASSPATH="${IBC_CLASSPATH:-${HERE}/../../target/classes}"
+CLASSES="${HERE}/classes"
+
+if [ ! -e "${IBC_CLASSPATH}" ]; then
+    echo "IBC classes not found at ${IBC_CLASSPATH}: build IBC with 'ant compile'" >&2
+    echo "or set IBC_CLASSPATH to IBC.jar or the directory containing the IBC classes" >&2
+    exit 1
+fi
+
+mkdir -p "${CLASSES}"
+javac -cp "${IBC_CLASSPATH}" -d "${CLASSES}" "${HERE}"/src/ibcalpha/ibc/*.java || exit 1
+
+exec java -Djava.awt.headless=true -cp "${CLASSES}:${IBC_CLASSPATH}" ibcalpha.ibc.CommandServerLoadTest "$@"
@@ -0,0 +1,374 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the command server's behaviour under load from many concurrent
+ * clients, without TWS.
+ *
+ * The command server is started in this JVM with stub MainWindowManager and
+ * ConfigDialogManager implementations, and the specified number of clients
+ * each send commands chosen at random (according to the specified weights)
+ * and wait for each reply before sending the next. When all the clients have
+ * finished, the throughput, latency percentiles, error replies and thread
+ * counts are reported.
+ *
+ * Arguments are of the form name=value:
+ *
+ *   clients=n          number of concurrent clients (default 50)
+ *   commands=n         commands sent by each client (default 200)
+ *   warmup=n           extra commands sent by each client before measuring
+ *                      starts (default 20)
+ *   mix=cmd:w,...      the commands to send and their relative weights
+ *                      (default STATUS:7,STATUS JSON:2,ENABLEAPI:1)
+ *   configdelay=ms     simulated time taken to open the Global Configuration
+ *                      dialog (default 50)
+ *   port=n             command server port (default: any free port)
+ *   log=path           file for IBC's log output (default
+ *                      commandserver-loadtest.log)
+ *   maxp99=ms          if set, exit with status 2 if the overall 99th
+ *                      percentile latency exceeds this
+ *
+ * Note that commands that need TWS's main window (eg RECONNECTDATA) give an
+ * ERROR reply, and ENABLEAPI gives an ERROR reply once the simulated dialog
+ * delay has elapsed: this still exercises the command server's handling of
+ * quick and long-running commands. Don't include STOP or RESTART in the mix.
+ *
+ * Run it headless (java -Djava.awt.headless=true ...).
+ */
+public class CommandServerLoadTest {
+
+    private static final int CLIENT_TIMEOUT_MILLIS = 60000;
+
+    private final int clients;
+    private final int commands;
+    private final int warmup;
+    private final String[] mixCommands;
+    private final int[] mixWeights;
+    private final int totalWeight;
+    private final long configDelay;
+    private final int port;
+    private final String logPath;
+    private final double maxP99;
+
+    private final PrintStream report = System.out;
+
+    private final AtomicInteger failedClients = new AtomicInteger();
+    private volatile boolean running;
+    private int peakThreads;
+    private int peakWorkerThreads;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i <= 0) {
+                System.err.println("invalid argument: " + arg + " (arguments must be of the form name=value)");
+                System.exit(1);
+            }
+            arguments.put(arg.substring(0, i).toLowerCase(), arg.substring(i + 1));
+        }
+        System.exit(new CommandServerLoadTest(arguments).run());
+    }
+
+    private CommandServerLoadTest(Map<String, String> arguments) throws IOException {
+        clients = Integer.parseInt(arguments.getOrDefault("clients", "50"));
+        commands = Integer.parseInt(arguments.getOrDefault("commands", "200"));
+        warmup = Integer.parseInt(arguments.getOrDefault("warmup", "20"));
+        configDelay = Long.parseLong(arguments.getOrDefault("configdelay", "50"));
+        logPath = arguments.getOrDefault("log", "commandserver-loadtest.log");
+        maxP99 = Double.parseDouble(arguments.getOrDefault("maxp99", "0"));
+
+        int p = Integer.parseInt(arguments.getOrDefault("port", "0"));
+        port = (p != 0) ? p : findFreePort();
+
+        String[] mix = arguments.getOrDefault("mix", "STATUS:7,STATUS JSON:2,ENABLEAPI:1").split(",");
+        mixCommands = new String[mix.length];
+        mixWeights = new int[mix.length];
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            int j = mix[i].lastIndexOf(':');
+            mixCommands[i] = (j < 0 ? mix[i] : mix[i].substring(0, j)).trim();
+            mixWeights[i] = (j < 0) ? 1 : Integer.parseInt(mix[i].substring(j + 1).trim());
+            total += mixWeights[i];
+        }
+        totalWeight = total;
+    }
+
+    private int run() throws Exception {
+        // IBC's console output goes to the log file: this must be done before
+        // Utils is loaded, since it captures System.out and System.err
+        PrintStream log = new PrintStream(new FileOutputStream(logPath), true, "UTF-8");
+        System.setOut(log);
+        System.setErr(log);
+
+        LoadTestSettings settings = new LoadTestSettings();
+        settings.set("CommandServerPort", port);
+        settings.set("CommandServerMaxConnections", clients + 1);
+        settings.set("CommandServerBacklog", clients);
+        settings.set("SuppressInfoMessages", "yes");
+        Settings.initialise(settings);
+        MainWindowManager.initialise(new StubMainWindowManager());
+        ConfigDialogManager.initialise(new StubConfigDialogManager(configDelay));
+
+        report.println("Command server load test: " + clients + " clients, " + commands + " commands each (after " + warmup + " warmup), mix " + describeMix() + ", port " + port);
+
+        CommandServer server = new CommandServer();
+        Thread serverThread = new Thread(server);
+        serverThread.start();
+        waitForServer();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        running = true;
+        Thread sampler = new Thread(this::sampleThreads, "LoadTest-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        final CountDownLatch connected = new CountDownLatch(clients);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Client[] clientList = new Client[clients];
+        List<Thread> clientThreads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            final Client client = new Client(i, connected, start);
+            clientList[i] = client;
+            Thread t = new Thread(client, "LoadTest-client-" + i);
+            clientThreads.add(t);
+            t.start();
+        }
+
+        connected.await();
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread t : clientThreads) t.join();
+        long elapsed = System.nanoTime() - startTime;
+
+        running = false;
+        sampler.join();
+        server.shutdown();
+        serverThread.join(5000);
+
+        return report(clientList, elapsed, threadsBefore);
+    }
+
+    private void waitForServer() throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                try (Writer w = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                    w.write("EXIT\n");
+                }
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw new IOException("command server did not start: see " + logPath, e);
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private void sampleThreads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        while (running) {
+            peakThreads = Math.max(peakThreads, threads.getThreadCount());
+            int workers = 0;
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                if (t.getName().startsWith("CommandServer-worker")) workers++;
+            }
+            peakWorkerThreads = Math.max(peakWorkerThreads, workers);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private int report(Client[] clientList, long elapsedNanos, int threadsBefore) {
+        int completed = 0;
+        long[][] latenciesByCommand = new long[mixCommands.length][];
+        int[] countsByCommand = new int[mixCommands.length];
+        int[] errorsByCommand = new int[mixCommands.length];
+        for (Client client : clientList) {
+            completed += client.completed;
+            for (int i = 0; i < client.completed; i++) countsByCommand[client.commandIndexes[i]]++;
+            for (int c = 0; c < mixCommands.length; c++) errorsByCommand[c] += client.errors[c];
+        }
+        for (int c = 0; c < mixCommands.length; c++) latenciesByCommand[c] = new long[countsByCommand[c]];
+        long[] all = new long[completed];
+        int[] fill = new int[mixCommands.length];
+        int n = 0;
+        for (Client client : clientList) {
+            for (int i = 0; i < client.completed; i++) {
+                int c = client.commandIndexes[i];
+                latenciesByCommand[c][fill[c]++] = client.latencies[i];
+                all[n++] = client.latencies[i];
+            }
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        report.printf("Completed %d commands in %.2f s: %.0f commands/s%n", completed, seconds, completed / seconds);
+        report.printf("%-20s %8s %8s %10s %10s %10s %10s%n", "command", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (int c = 0; c < mixCommands.length; c++) {
+            printLatencies(mixCommands[c], latenciesByCommand[c], errorsByCommand[c]);
+        }
+        int totalErrors = 0;
+        for (int e : errorsByCommand) totalErrors += e;
+        printLatencies("all", all, totalErrors);
+        report.printf("Threads: %d before, peak %d (peak command server workers %d)%n", threadsBefore, peakThreads, peakWorkerThreads);
+
+        if (failedClients.get() != 0) {
+            report.println(failedClients.get() + " clients failed: see " + logPath);
+            return 1;
+        }
+        if (maxP99 > 0 && percentile(all, 0.99) / 1e6 > maxP99) {
+            report.println("99th percentile latency exceeds " + maxP99 + " ms");
+            return 2;
+        }
+        return 0;
+    }
+
+    private void printLatencies(String name, long[] latencies, int errors) {
+        Arrays.sort(latencies);
+        report.printf("%-20s %8d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                      name, latencies.length, errors,
+                      percentile(latencies, 0.5) / 1e6,
+                      percentile(latencies, 0.9) / 1e6,
+                      percentile(latencies, 0.99) / 1e6,
+                      (latencies.length == 0 ? 0 : latencies[latencies.length - 1]) / 1e6);
+    }
+
+    /*
+     * the values must be sorted
+     */
+    private static double percentile(long[] values, double p) {
+        if (values.length == 0) return 0;
+        int i = (int) Math.ceil(p * values.length) - 1;
+        return values[Math.max(0, i)];
+    }
+
+    private String describeMix() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < mixCommands.length; i++) {
+            if (i != 0) sb.append(',');
+            sb.append(mixCommands[i]).append(':').append(mixWeights[i]);
+        }
+        return sb.toString();
+    }
+
+    private int chooseCommand(Random random) {
+        int r = random.nextInt(totalWeight);
+        for (int i = 0; i < mixWeights.length; i++) {
+            r -= mixWeights[i];
+            if (r < 0) return i;
+        }
+        return mixWeights.length - 1;
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private final class Client implements Runnable {
+        private final int id;
+        private final CountDownLatch connected;
+        private final CountDownLatch start;
+
+        final long[] latencies = new long[commands];
+        final int[] commandIndexes = new int[commands];
+        final int[] errors = new int[mixCommands.length];
+        volatile int completed;
+
+        Client(int id, CountDownLatch connected, CountDownLatch start) {
+            this.id = id;
+            this.connected = connected;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            Random random = new Random(id);
+            boolean counted = false;
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                socket.setSoTimeout(CLIENT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+                connected.countDown();
+                counted = true;
+                start.await();
+
+                for (int i = 0; i < warmup; i++) {
+                    send(writer, reader, mixCommands[chooseCommand(random)]);
+                }
+                for (int i = 0; i < commands; i++) {
+                    int c = chooseCommand(random);
+                    long t = System.nanoTime();
+                    String reply = send(writer, reader, mixCommands[c]);
+                    latencies[i] = System.nanoTime() - t;
+                    commandIndexes[i] = c;
+                    if (reply.startsWith("ERROR")) errors[c]++;
+                    completed = i + 1;
+                }
+                send(writer, reader, "EXIT");
+            } catch (Exception e) {
+                failedClients.incrementAndGet();
+                Utils.logToConsole("LoadTest client " + id + " failed after " + completed + " commands: " + e);
+            } finally {
+                if (!counted) connected.countDown();
+            }
+        }
+
+        private String send(Writer writer, BufferedReader reader, String command) throws IOException {
+            writer.write(command + "\n");
+            writer.flush();
+            String reply = reader.readLine();
+            if (reply == null) throw new IOException("connection closed by the command server");
+            return reply;
+        }
+    }
+
+}
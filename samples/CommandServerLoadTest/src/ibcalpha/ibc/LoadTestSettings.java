@@ -0,0 +1,72 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Settings for the command server load test: only the values set by the load
+ * test are used, everything else takes its default.
+ */
+class LoadTestSettings extends Settings {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    void set(String key, Object value) {
+        values.put(key, String.valueOf(value));
+    }
+
+    @Override
+    public void logDiagnosticMessage() {
+        Utils.logToConsole("using load test settings: " + values);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        if (value == null) return defaultValue;
+        return value.equalsIgnoreCase("yes") || value.equalsIgnoreCase("true");
+    }
+
+    @Override
+    public char getChar(String key, String defaultValue) {
+        String value = values.getOrDefault(key, defaultValue);
+        return value.isEmpty() ? 0 : value.charAt(0);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+}
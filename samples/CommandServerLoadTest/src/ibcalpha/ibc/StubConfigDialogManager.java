@@ -0,0 +1,84 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.concurrent.TimeUnit;
+import javax.swing.JDialog;
+
+/**
+ * A ConfigDialogManager for the command server load test. There is no real
+ * Global Configuration dialog, so getting the dialog just waits for the
+ * specified time (to simulate TWS opening it) and then returns null, which
+ * causes configuration commands such as ENABLEAPI to give an ERROR reply.
+ */
+class StubConfigDialogManager extends ConfigDialogManager {
+
+    private final long delayMillis;
+
+    StubConfigDialogManager(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void logDiagnosticMessage() {
+        Utils.logToConsole("using stub config dialog manager: delay " + delayMillis + " ms");
+    }
+
+    @Override
+    public void clearConfigDialog() {
+    }
+
+    @Override
+    public boolean getApiConfigChangeConfirmationExpected() {
+        return false;
+    }
+
+    @Override
+    public JDialog getConfigDialog(long timeout, TimeUnit unit) throws IllegalStateException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    @Override
+    public JDialog getConfigDialog() throws IllegalStateException {
+        return getConfigDialog(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void releaseConfigDialog() {
+    }
+
+    @Override
+    public void setApiConfigChangeConfirmationExpected() {
+    }
+
+    @Override
+    public void setApiConfigChangeConfirmationHandled() {
+    }
+
+    @Override
+    public void setConfigDialog(JDialog window) {
+    }
+
+}
@@ -21,7 +21,6 @@ package ibcalpha.ibc;
 import java.awt.Window;
 import java.awt.event.WindowEvent;
 import java.io.File;
-import java.util.concurrent.TimeUnit;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -50,6 +49,11 @@ public abstract class AbstractLoginHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public final void handleWindow(Window window, int eventID) {
         if (LoginManager.loginManager().getLoginHandler() == null) LoginManager.loginManager().setLoginHandler(this);
@@ -82,6 +86,7 @@ public abstract class AbstractLoginHandler implements WindowHandler {
             if (!preLogin(window, WindowEvent.WINDOW_OPENED)) return;
 
             Utils.logToConsole("Login attempt: " + ++loginAttemptNumber);
+            IbcMetrics.getInstance().loginAttempts.increment();
             doLogin(window);
         } catch (IbcException e) {
             Utils.exitWithError(ErrorCodes.CANT_FIND_CONTROL, "could not login: could not find control: " + e.getMessage());
@@ -111,38 +116,16 @@ public abstract class AbstractLoginHandler implements WindowHandler {
             // that IBC normally handles, so it goes undetected, and thus IBC doesn't
             // know when to process the Second Factor Authentication dialog. 
             //
-            // To avoid this problem, we make a periodic check that the JLabel that
-            // initially contained "LOGIN" has changed to "SECOND FACTOR AUTHENTICATION":
-            // when this happens, we can pass the window to the SecondFactorAuthenticationDialogHandler
-            // to be actioned.
+            // To avoid this problem, we watch for the JLabel that initially
+            // contained "LOGIN" to change to "SECOND FACTOR AUTHENTICATION" (or for
+            // a new label with that text to appear): when this happens, we can pass
+            // the window to the SecondFactorAuthenticationDialogHandler to be actioned.
 
             Utils.logToConsole("Waiting for Login frame to become SecondFactorAuthenticationDialog");
-            MyScheduledExecutorService.getInstance().schedule(
-                    () -> {
-                        checkChangeToSecondFactorAuthenticationDialog(window);
-                    }, 
-                    200, TimeUnit.MILLISECONDS);
+            LoginFrameMorphWatcher.start(window);
         }
     }
 
-    private void checkChangeToSecondFactorAuthenticationDialog(Window window) {
-        JLabel currentTitleLabel = SwingUtils.findLabel(window, "SECOND FACTOR AUTHENTICATION");
-        if (currentTitleLabel != null) {
-            // the login frame has now become the 2FA dialog, so invoke the 
-            // handler for that as if it had just been opened
-            Utils.logToConsole("Login frame has now become SecondFactorAuthenticationDialog");
-            TwsListener.logWindow(window, WindowEvent.WINDOW_OPENED);
-            TwsListener.logWindowStructure(window, WindowEvent.WINDOW_OPENED, true);
-            SecondFactorAuthenticationDialogHandler.getInstance().handleWindow(window, WindowEvent.WINDOW_OPENED);
-        } else {
-            MyScheduledExecutorService.getInstance().schedule(
-                    () -> {
-                        checkChangeToSecondFactorAuthenticationDialog(window);
-                    }, 
-                    200, TimeUnit.MILLISECONDS);
-        }
-    }
-    
     protected abstract boolean initialise(final Window window, int eventID) throws IbcException;
 
     protected abstract boolean preLogin(final Window window, int eventID) throws IbcException;
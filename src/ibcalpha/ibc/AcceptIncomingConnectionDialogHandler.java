@@ -32,6 +32,10 @@ class AcceptIncomingConnectionDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         final String Accept = "accept";
         final String Reject = "reject";
@@ -62,5 +66,10 @@ class AcceptIncomingConnectionDialogHandler implements WindowHandler {
 
         return (SwingUtils.findLabel(window, "Accept incoming connection") != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("Accept incoming connection");
+    }
 }
 
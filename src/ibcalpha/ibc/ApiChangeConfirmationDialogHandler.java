@@ -35,6 +35,11 @@ class ApiChangeConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         ConfigDialogManager.configDialogManager().setApiConfigChangeConfirmationHandled();
@@ -51,4 +56,9 @@ class ApiChangeConfirmationDialogHandler implements WindowHandler {
         return (SwingUtils.findLabel(window, "apply the new socket port setting") != null);
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("apply the new socket port setting");
+    }
+
 }
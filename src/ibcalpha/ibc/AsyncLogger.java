@@ -0,0 +1,369 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Writes IBC's log output on a background thread, so that logging never
+ * makes the calling thread (very often the Swing event dispatch thread) wait
+ * for I/O.
+ * 
+ * Callers place log records in a preallocated ring buffer without taking any
+ * locks. A single writer thread formats the records, including the
+ * timestamp (the date and time part of which is only formatted once per
+ * second), and writes them in batches, flushing after each batch.
+ * 
+ * If the buffer fills because the output can't keep up, threads other than
+ * the event dispatch thread wait for space, and records logged on the event
+ * dispatch thread are discarded (and the number discarded is reported later).
+ * 
+ * Any output still buffered is written before IBC exits: see flush().
+ * 
+ * If a log file has been set, all output is written to it rather than to
+ * the console streams.
+ * 
+ * Records are written either in IBC's normal text format or as JSON (see
+ * JsonLogEncoder).
+ */
+class AsyncLogger {
+
+    static final int RAW = 0;
+    static final int MESSAGE = 1;
+    static final int ERROR = 2;
+    static final int EXCEPTION = 3;
+    static final int STACK_TRACE = 4;
+    static final int EVENT = 5;
+
+    private static final int CAPACITY = 8192;    // must be a power of 2
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_BATCH_CHARS = 64 * 1024;
+    private static final long IDLE_WAIT_NANOS = 10_000_000;
+    private static final long FULL_WAIT_NANOS = 100_000;
+    private static final long SHUTDOWN_FLUSH_MILLIS = 2000;
+
+    private static final String NEWLINE = System.lineSeparator();
+    private static final String ERROR_BANNER = "!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!";
+    private static final DateTimeFormatter SECONDS_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss:");
+
+    private static final AsyncLogger _instance = new AsyncLogger();
+
+    static AsyncLogger getInstance() {
+        return _instance;
+    }
+
+    private static final class LogRecord {
+        PrintStream stream;
+        int kind;
+        LogLevel level;
+        String subsystem;
+        long time;
+        String text;
+        Throwable throwable;
+        LogEvent event;
+    }
+
+    private final LogRecord[] records = new LogRecord[CAPACITY];
+
+    // published.get(i) is the sequence number of the record currently in 
+    // records[i], set once the record is complete
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+    // the sequence number that will be given to the next record logged
+    private final AtomicLong claimed = new AtomicLong();
+
+    // the sequence number of the next record the writer will take: slots
+    // holding earlier records may be reused
+    private volatile long consumed;
+
+    // all records before this have been written and flushed
+    private volatile long written;
+
+    private final AtomicLong discarded = new AtomicLong();
+
+    private volatile RotatingLogFile logFile;
+    private volatile boolean jsonFormat;
+
+    private final Thread writer;
+    private volatile boolean writerIdle;
+
+    // used only by the writer thread
+    private final StringBuilder batch = new StringBuilder(MAX_BATCH_CHARS + 1024);
+    private PrintStream batchStream;
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedSecondText;
+    private final JsonLogEncoder jsonEncoder = new JsonLogEncoder();
+
+    private AsyncLogger() {
+        for (int i = 0; i < CAPACITY; i++) {
+            records[i] = new LogRecord();
+            published.set(i, -1);
+        }
+        writer = new Thread(this::writeRecords, "IBC-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(SHUTDOWN_FLUSH_MILLIS), "IBC-logger-flush"));
+    }
+
+    void log(PrintStream stream, int kind, String text, Throwable throwable) {
+        LogLevel level = (kind == ERROR || kind == EXCEPTION || kind == STACK_TRACE) ? LogLevel.ERROR : LogLevel.INFO;
+        enqueue(stream, kind, level, null, text, throwable, null);
+    }
+
+    void log(PrintStream stream, LogLevel level, String subsystem, String text) {
+        enqueue(stream, MESSAGE, level, subsystem, text, null, null);
+    }
+
+    void logEvent(PrintStream stream, LogEvent event) {
+        enqueue(stream, EVENT, event.level, event.subsystem, null, null, event);
+    }
+
+    private void enqueue(PrintStream stream, int kind, LogLevel level, String subsystem, String text, Throwable throwable, LogEvent event) {
+        long time = System.currentTimeMillis();
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed >= CAPACITY) {
+                if (SwingUtilities.isEventDispatchThread() || Thread.currentThread() == writer) {
+                    discarded.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        int index = (int) sequence & MASK;
+        LogRecord record = records[index];
+        record.stream = stream;
+        record.kind = kind;
+        record.level = level;
+        record.subsystem = subsystem;
+        record.time = time;
+        record.text = text;
+        record.throwable = throwable;
+        record.event = event;
+        published.set(index, sequence);
+
+        if (writerIdle) LockSupport.unpark(writer);
+    }
+
+    /**
+     * Specifies whether subsequent records are written as JSON rather than
+     * as text.
+     */
+    void setJsonFormat(boolean value) {
+        jsonFormat = value;
+    }
+
+    /**
+     * Sends all subsequent output to the specified log file, or back to the
+     * console if null.
+     */
+    void setLogFile(RotatingLogFile file) {
+        RotatingLogFile previous = logFile;
+        logFile = file;
+        if (previous != null) {
+            flush(SHUTDOWN_FLUSH_MILLIS);
+            previous.close();
+        }
+    }
+
+    /**
+     * Waits until everything logged before this call has been written, or
+     * until the specified time has elapsed.
+     */
+    void flush(long timeoutMillis) {
+        if (Thread.currentThread() == writer) return;
+        long target = claimed.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written < target && writer.isAlive() && System.currentTimeMillis() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    private void writeRecords() {
+        while (true) {
+            try {
+                long sequence = consumed;
+                int index = (int) sequence & MASK;
+                if (published.get(index) != sequence) {
+                    writeBatch();
+                    written = sequence;
+                    reportDiscarded();
+                    writerIdle = true;
+                    if (published.get(index) != sequence) LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    writerIdle = false;
+                    continue;
+                }
+
+                LogRecord record = records[index];
+                if (record.stream != batchStream) {
+                    writeBatch();
+                    written = sequence;
+                    batchStream = record.stream;
+                }
+                int batchLength = batch.length();
+                try {
+                    format(record);
+                } catch (Throwable t) {
+                    // drop just this record: the records already in the
+                    // batch are still written
+                    batch.setLength(batchLength);
+                    t.printStackTrace();
+                } finally {
+                    record.stream = null;
+                    record.subsystem = null;
+                    record.text = null;
+                    record.throwable = null;
+                    record.event = null;
+                    consumed = sequence + 1;
+                }
+
+                if (batch.length() >= MAX_BATCH_CHARS) {
+                    writeBatch();
+                    written = sequence + 1;
+                }
+            } catch (Throwable t) {
+                // don't let a failure to write one batch stop all further
+                // logging
+                batch.setLength(0);
+                t.printStackTrace();
+            }
+        }
+    }
+
+    private void writeBatch() {
+        if (batch.length() == 0) return;
+
+        RotatingLogFile file = logFile;
+        if (file != null) {
+            try {
+                file.write(batch);
+                batch.setLength(0);
+                return;
+            } catch (IOException e) {
+                logFile = null;
+                file.close();
+                batchStream.append(batch);
+                batch.setLength(0);
+                batchStream = Utils.getErrStream();
+                appendLine(System.currentTimeMillis(), LogLevel.ERROR, "Could not write to log file " + file.getPath() + " (" + e + "): logging to the console instead");
+            }
+        }
+
+        batchStream.append(batch);
+        batchStream.flush();
+        batch.setLength(0);
+    }
+
+    private void reportDiscarded() {
+        long count = discarded.getAndSet(0);
+        if (count == 0) return;
+        batchStream = Utils.getErrStream();
+        appendLine(System.currentTimeMillis(), LogLevel.ERROR, count + " log records were discarded because the log buffer was full");
+        writeBatch();
+    }
+
+    private void format(LogRecord record) {
+        if (jsonFormat) {
+            formatJson(record);
+            return;
+        }
+
+        switch (record.kind) {
+            case RAW:
+                batch.append(record.text).append(NEWLINE);
+                break;
+            case MESSAGE:
+                appendMessage(record.time, record.text);
+                break;
+            case ERROR:
+                batch.append(ERROR_BANNER).append(NEWLINE);
+                appendMessage(record.time, record.text);
+                batch.append(ERROR_BANNER).append(NEWLINE);
+                break;
+            case EXCEPTION:
+                batch.append(ERROR_BANNER).append(NEWLINE);
+                appendMessage(record.time, "An exception has occurred:");
+                appendStackTrace(record.throwable);
+                batch.append(ERROR_BANNER).append(NEWLINE);
+                break;
+            case STACK_TRACE:
+                appendStackTrace(record.throwable);
+                break;
+            case EVENT:
+                if (record.event.message != null) appendMessage(record.time, record.event.message);
+                break;
+        }
+    }
+
+    private void formatJson(LogRecord record) {
+        String message = (record.kind == EXCEPTION) ? "An exception has occurred" : record.text;
+        jsonEncoder.encode(batch, record.time, record.level, record.subsystem, message, record.throwable, record.event);
+    }
+
+    private void appendLine(long time, LogLevel level, String message) {
+        if (jsonFormat) {
+            jsonEncoder.encode(batch, time, level, null, message, null, null);
+        } else {
+            appendMessage(time, message);
+        }
+    }
+
+    private void appendMessage(long time, String message) {
+        appendTimestamp(time);
+        batch.append(" IBC: ").append(message).append(NEWLINE);
+    }
+
+    private void appendTimestamp(long time) {
+        long second = Math.floorDiv(time, 1000);
+        if (second != cachedSecond) {
+            cachedSecondText = SECONDS_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault()));
+            cachedSecond = second;
+        }
+        batch.append(cachedSecondText);
+        int millis = (int) Math.floorMod(time, 1000);
+        if (millis < 100) batch.append('0');
+        if (millis < 10) batch.append('0');
+        batch.append(millis);
+    }
+
+    private void appendStackTrace(Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        batch.append(sw.getBuffer());
+    }
+
+}
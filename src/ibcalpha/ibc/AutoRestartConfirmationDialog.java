@@ -34,6 +34,11 @@ public class AutoRestartConfirmationDialog implements WindowHandler  {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (SwingUtils.clickButton(window, "OK")) {
@@ -51,4 +56,9 @@ public class AutoRestartConfirmationDialog implements WindowHandler  {
         return (op != null && op.getMessage() != null && op.getMessage().toString().contains("trading platform restart automatically"));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs();
+    }
+
 }
@@ -35,6 +35,11 @@ public class BidAskLastSizeDisplayUpdateDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         String accept = Settings.settings().getString("AcceptBidAskLastSizeDisplayUpdateNotification", "ignore");
@@ -72,5 +77,10 @@ public class BidAskLastSizeDisplayUpdateDialogHandler implements WindowHandler {
         if (! (window instanceof JDialog)) return false;
         return (SwingUtils.findTextPane(window, "Bid, Ask and Last Size Display Update") != null );
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTextPaneContaining("Bid, Ask and Last Size Display Update");
+    }
     
 }
@@ -32,6 +32,10 @@ class BlindTradingWarningDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (! Settings.settings().getBoolean("AllowBlindTrading", false)) return;
 
@@ -50,4 +54,9 @@ class BlindTradingWarningDialogHandler implements WindowHandler {
                 SwingUtils.findLabel(window, "Are you sure you want to submit this order?") != null));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs();
+    }
+
 }
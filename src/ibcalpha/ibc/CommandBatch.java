@@ -0,0 +1,143 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries out a batch of commands sent as:
+ *
+ *     BATCH
+ *     command
+ *     ...
+ *     END
+ *
+ * The steps are executed in order, and execution stops after the first step
+ * that fails (ie that gives an ERROR reply, or no reply at all). Consecutive
+ * steps that change settings in the Global Configuration dialog are applied
+ * together in a single ConfigurationTransaction, so that the dialog is only
+ * opened once for them (see CommandDispatcher.getConfigurationAction: at
+ * present this only applies to ENABLEAPI).
+ *
+ * The response is sent in one piece when the batch has finished: a line of
+ * the form
+ *
+ *     STEP n command: replies
+ *
+ * (with the batch's tag, if any, before the step number) for each step that
+ * was executed, followed by either 'OK BATCH completed n
+ * steps' or 'ERROR BATCH failed at step n of m'.
+ */
+final class CommandBatch {
+
+    static final int MAX_STEPS = 100;
+
+    private final CommandChannel mChannel;
+    private final List<String> mSteps;
+
+    CommandBatch(CommandChannel channel, List<String> steps) {
+        mChannel = channel;
+        mSteps = steps;
+    }
+
+    void execute() {
+        Utils.logToConsole("CommandServer executing batch of " + mSteps.size() + " steps");
+
+        final List<String> results = new ArrayList<>();
+        boolean closeRequested = false;
+        int failedStep = 0;
+
+        int next = 0;
+        while (next < mSteps.size() && failedStep == 0) {
+            final List<CommandChannel> stepChannels = executeNextSteps(next);
+            for (CommandChannel stepChannel : stepChannels) {
+                next++;
+                List<String> replies = stepChannel.getReplies();
+                if (replies.isEmpty()) replies.add("ERROR no reply");
+                results.add(formatResult(next, mSteps.get(next - 1), replies));
+                if (stepChannel.isCloseRequested()) closeRequested = true;
+                if (failedStep == 0 && isFailure(replies)) failedStep = next;
+            }
+        }
+
+        if (failedStep == 0) {
+            mChannel.writeBatchResponse(results, true, "BATCH completed " + mSteps.size() + " steps");
+        } else {
+            Utils.logError("CommandServer: batch failed at step " + failedStep + " of " + mSteps.size());
+            mChannel.writeBatchResponse(results, false, "BATCH failed at step " + failedStep + " of " + mSteps.size());
+        }
+        if (closeRequested) mChannel.closeConnection();
+    }
+
+    /*
+     * Executes the step at the specified index, or if it is a configuration
+     * step, that step and any configuration steps that immediately follow it
+     * (stopping at the first that fails). Returns the channels holding the
+     * replies for the steps executed.
+     */
+    private List<CommandChannel> executeNextSteps(int index) {
+        final List<CommandChannel> stepChannels = new ArrayList<>();
+        final ConfigurationTransaction transaction = new ConfigurationTransaction();
+        transaction.setStopOnFailure();
+        while (index + stepChannels.size() < mSteps.size()) {
+            CommandChannel stepChannel = mChannel.forBatchStep();
+            ConfigurationAction action = CommandDispatcher.getConfigurationAction(mSteps.get(index + stepChannels.size()), stepChannel);
+            if (action == null) break;
+            transaction.add(action);
+            stepChannels.add(stepChannel);
+        }
+
+        if (stepChannels.isEmpty()) {
+            CommandChannel stepChannel = mChannel.forBatchStep();
+            new CommandDispatcher(stepChannel).dispatch(mSteps.get(index));
+            stepChannels.add(stepChannel);
+        } else {
+            Utils.logToConsole("CommandServer applying " + stepChannels.size() + " batch steps in one configuration session");
+            transaction.execute();
+
+            // the steps after a failed one were not executed, so they are
+            // not reported
+            final List<CommandChannel> executedChannels = new ArrayList<>();
+            for (CommandChannel stepChannel : stepChannels) {
+                executedChannels.add(stepChannel);
+                // no reply means the step wasn't reached, eg because the
+                // Global Configuration dialog couldn't be obtained
+                if (stepChannel.getReplies().isEmpty()) stepChannel.writeNack("configuration could not be applied");
+                if (isFailure(stepChannel.getReplies())) break;
+            }
+            return executedChannels;
+        }
+        return stepChannels;
+    }
+
+    private static boolean isFailure(List<String> replies) {
+        for (String reply : replies) {
+            if (reply.startsWith("ERROR")) return true;
+        }
+        return false;
+    }
+
+    private String formatResult(int stepNumber, String step, List<String> replies) {
+        String tag = mChannel.getTag() == null ? "" : "#" + mChannel.getTag() + " ";
+        return "STEP " + tag + stepNumber + " " + step + ": " + String.join(" | ", replies);
+    }
+
+}
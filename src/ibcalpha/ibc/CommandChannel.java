@@ -16,129 +16,141 @@
 // You should have received a copy of the GNU General Public License
 // along with IBC.  If not, see <http://www.gnu.org/licenses/>.
 
-package ibcalpha.ibc;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
-import java.net.SocketException;
+package ibcalpha.ibc;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends the replies to a command.
+ *
+ * For an untagged command, replies are written as they always have been, eg
+ * 'OK Goodbye'. For a tagged command ('#id command'), each reply carries the
+ * tag immediately after the reply type, eg 'OK #id Goodbye', so that a client
+ * with several commands in progress on the same connection can tell which
+ * command each reply relates to. Prompts are not sent for tagged commands.
+ */
 final class CommandChannel {
 
     private static final String _Prompt = Settings.settings().getString("CommandPrompt", "");
     private static final boolean _SuppressInfo = Settings.settings().getBoolean("SuppressInfoMessages", true);
 
-    private Socket mSocket;
-    private BufferedReader mInstream = null;
-    private BufferedWriter mOutstream = null;
+    private final CommandConnection mConnection;
+    private final String mTag;
 
-    CommandChannel(Socket socket) {
+    // for a batch step, the replies are collected here rather than sent
+    private final List<String> mReplies;
+    private volatile boolean mCloseRequested;
 
-        mSocket = socket;
-        if (! setupStreams()) return;
+    CommandChannel(CommandConnection connection, String tag) {
+        this(connection, tag, null);
+    }
 
-        writeInfo("IBC Command Server");
+    private CommandChannel(CommandConnection connection, String tag, List<String> replies) {
+        mConnection = connection;
+        mTag = tag;
+        mReplies = replies;
     }
 
-    void close() {
-        try {
-            if (mSocket == null || mSocket.isClosed()) return;
-            
-            Utils.logToConsole("Closing command channel");
-            mSocket.shutdownInput();
-            mSocket.shutdownOutput();
-
-            mInstream.close();
-            mInstream = null;
-
-            mOutstream.close();
-            mOutstream = null;
-
-            mSocket.close();
-            mSocket = null;
-        } catch (SocketException e) {
-            // the socket was reset by the client - ignore
-            Utils.logException(e);
-        } catch (IOException e) {
-            // ignore
-            Utils.logException(e);
+    /**
+     * Returns a channel for one step of a batch (see CommandBatch): the
+     * replies to the step are collected, to be sent as part of the batch's
+     * combined response, and no prompt is sent.
+     */
+    CommandChannel forBatchStep() {
+        return new CommandChannel(mConnection, mTag, Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    /**
+     * Returns the replies collected by a batch step channel.
+     */
+    List<String> getReplies() {
+        synchronized (mReplies) {
+            return new ArrayList<>(mReplies);
         }
     }
 
-    String getCommand() {
-        String cmd = null;
-
-        if (mInstream == null) return null;
-
-        try {
-            cmd = mInstream.readLine();
-            while (cmd != null && cmd.trim().isEmpty()) {
-                writePrompt();
-                cmd = mInstream.readLine();
-            }
-
-            if (cmd != null) Utils.logToConsole("CommandServer received command: " + cmd);
-        } catch (SocketException e) {
-            // the socket was reset by the client
-            Utils.logException(e);
-            close();
-        } catch (IOException e) {
-            Utils.logException(e);
-            close();
+    /**
+     * Indicates whether closeConnection has been called on a batch step
+     * channel: the connection is closed once the batch's response has been
+     * sent.
+     */
+    boolean isCloseRequested() {
+        return mCloseRequested;
+    }
+
+    /**
+     * Closes the connection, once any replies already written have been sent.
+     *
+     * For a tagged command this does nothing, since other commands may still
+     * be in progress on the same connection.
+     */
+    void close() {
+        if (mTag == null && mReplies == null) mConnection.close();
+    }
+
+    /**
+     * Closes the connection (whether or not the command is tagged), once any
+     * replies already written have been sent.
+     */
+    void closeConnection() {
+        if (mReplies != null) {
+            mCloseRequested = true;
+        } else {
+            mConnection.close();
         }
-        return cmd;
     }
 
-    void writeAck(String info) {
-        replyLine("OK " + info);
+    CommandConnection getConnection() {
+        return mConnection;
     }
 
-    final void writeInfo(String info) {
-        if (! _SuppressInfo) replyLine("INFO " + info);
+    String getTag() {
+        return mTag;
     }
 
-    void writeNack(String info) {
-        replyLine("ERROR " + info);
+    void writeAck(String info) {
+        replyLine("OK", info);
     }
 
-    void writePrompt() {
-        if (! _Prompt.isEmpty()) reply(_Prompt);
+    void writeInfo(String info) {
+        if (! _SuppressInfo) replyLine("INFO", info);
     }
 
-    private void reply(String message) {
-        reply(message, false);
+    void writeNack(String info) {
+        replyLine("ERROR", info);
     }
 
-    private void reply(String message, boolean addNewline) {
-        if (mOutstream == null) return;
-        try {
-            mOutstream.write(message);
-            if (addNewline) mOutstream.newLine();
-            mOutstream.flush();
-        } catch (SocketException e) {
-            // the socket was reset by the client
-            Utils.logException(e);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    void writePrompt() {
+        if (mTag == null && mReplies == null && ! _Prompt.isEmpty()) mConnection.write(_Prompt, false);
     }
 
-    private void replyLine(String message) {
-        reply(message,true);
+    /**
+     * Sends the combined response to a batch: the specified lines, followed
+     * by an OK or ERROR line with the specified message. These are written
+     * together so that replies to other (tagged) commands can't be
+     * interleaved with them.
+     */
+    void writeBatchResponse(List<String> lines, boolean ok, String message) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.lineSeparator());
+        }
+        sb.append(ok ? "OK" : "ERROR");
+        if (mTag != null) sb.append(" #").append(mTag);
+        sb.append(' ').append(message);
+        mConnection.write(sb.toString(), true);
     }
 
-    private boolean setupStreams() {
-        try {
-            mInstream = new BufferedReader(new InputStreamReader(mSocket.getInputStream()));
-            mOutstream = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
-            return true;
-        } catch (IOException e) {
-            // this is most likely a result of the user closing the command connection
-            Utils.logException(e);
-            return false;
+    private void replyLine(String type, String message) {
+        if (mReplies != null) {
+            mReplies.add(type + " " + message);
+        } else if (mTag == null) {
+            mConnection.write(type + " " + message, true);
+        } else {
+            mConnection.write(type + " #" + mTag + " " + message, true);
         }
     }
 
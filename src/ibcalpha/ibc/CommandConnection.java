@@ -0,0 +1,444 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+package ibcalpha.ibc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A connection to a command client.
+ *
+ * Incoming bytes are read by the CommandServer's selector thread and split
+ * into lines, each of which is a command.
+ *
+ * Untagged commands are queued and executed one at a time, in the order they
+ * were received. A tagged command (one of the form '#id command') is executed
+ * as soon as it is received, even while other commands are in progress or
+ * waiting, and its replies carry the same tag: this allows a client to send
+ * several commands without waiting for each to complete (see CommandChannel).
+ * The only exception is a tagged command sent after an untagged BATCH that is
+ * still waiting, since until that batch has started it's not known which of
+ * the following lines belong to it.
+ *
+ * The lines between a BATCH command and the following END line are collected
+ * and executed together as a CommandBatch.
+ *
+ * Replies may be written from any thread. They are written immediately if
+ * the socket will accept them; otherwise they are queued and written when the
+ * selector reports that the socket is writable.
+ */
+final class CommandConnection {
+
+    private static final int MAX_COMMAND_LENGTH = 4096;
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final CommandServer mServer;
+    private final SocketChannel mSocketChannel;
+    private final SelectionKey mKey;
+    private final CommandChannel mChannel;
+    private final String mRemoteAddress;
+
+    private final ByteBuffer mInBuffer = ByteBuffer.allocate(1024);
+    private byte[] mLine = new byte[128];
+    private int mLineLength;
+    private boolean mDiscardingLine;
+    private boolean mEndOfInput;
+
+    private final Deque<String> mPendingCommands = new ArrayDeque<>();
+    private boolean mBusy;
+    private int mTaggedCommandsInProgress;
+
+    // the steps of the batch currently being received (if any), and the
+    // channel for its response
+    private List<String> mBatchSteps;
+    private CommandChannel mBatchChannel;
+
+    private final Deque<ByteBuffer> mOutQueue = new ArrayDeque<>();
+    private boolean mWriteInterest;
+
+    private boolean mCloseRequested;
+    private boolean mClosed;
+
+    private volatile long mLastActivity = System.currentTimeMillis();
+
+    CommandConnection(CommandServer server, SocketChannel socketChannel, SelectionKey key, String remoteAddress) {
+        mServer = server;
+        mSocketChannel = socketChannel;
+        mKey = key;
+        mRemoteAddress = remoteAddress;
+        mChannel = new CommandChannel(this, null);
+    }
+
+    void open() {
+        mChannel.writeInfo("IBC Command Server");
+    }
+
+    String getRemoteAddress() {
+        return mRemoteAddress;
+    }
+
+    /**
+     * Indicates whether nothing has been received on this connection since
+     * the specified time, and no command is in progress.
+     */
+    synchronized boolean isIdleSince(long time) {
+        if (IbcEvents.getInstance().isSubscribed(this)) return false;
+        return !mBusy && mTaggedCommandsInProgress == 0 && mPendingCommands.isEmpty() && mLastActivity < time;
+    }
+
+    /**
+     * Closes the connection, once any replies already written have been sent.
+     */
+    synchronized void close() {
+        if (mClosed) return;
+        mCloseRequested = true;
+        if (mOutQueue.isEmpty()) closeNow();
+    }
+
+    /**
+     * Closes the connection immediately, discarding any replies that have not
+     * yet been sent.
+     */
+    synchronized void abort() {
+        closeNow();
+    }
+
+    /*
+     * called on the selector thread
+     */
+    void onReadable() throws IOException {
+        mInBuffer.clear();
+        int count = mSocketChannel.read(mInBuffer);
+        if (count < 0) {
+            endOfInput();
+            return;
+        }
+        mLastActivity = System.currentTimeMillis();
+
+        mInBuffer.flip();
+        while (mInBuffer.hasRemaining()) {
+            byte b = mInBuffer.get();
+            if (b == '\n') {
+                endOfLine();
+            } else if (mDiscardingLine) {
+                // ignore the rest of an over-long line
+            } else if (mLineLength == MAX_COMMAND_LENGTH) {
+                mDiscardingLine = true;
+            } else {
+                if (mLineLength == mLine.length) mLine = Arrays.copyOf(mLine, mLine.length * 2);
+                mLine[mLineLength++] = b;
+            }
+        }
+    }
+
+    /*
+     * called on the selector thread
+     */
+    synchronized void onWritable() {
+        flush();
+    }
+
+    private void endOfLine() {
+        int length = mLineLength;
+        if (length > 0 && mLine[length - 1] == '\r') length--;
+        String line = new String(mLine, 0, length, StandardCharsets.UTF_8);
+        mLineLength = 0;
+
+        if (mDiscardingLine) {
+            mDiscardingLine = false;
+            Utils.logError("CommandServer: command too long from " + mRemoteAddress);
+            mChannel.writeNack("Command too long");
+            return;
+        }
+        commandReceived(line);
+    }
+
+    private synchronized void commandReceived(String line) {
+        if (mBatchSteps != null && !mCloseRequested) {
+            // a line received while a batch is being collected is one of its
+            // steps (any lines still pending were received before the batch
+            // started, so they aren't)
+            batchLineReceived(line);
+            return;
+        }
+        mPendingCommands.add(line);
+        processCommands();
+    }
+
+    private synchronized void endOfInput() {
+        mEndOfInput = true;
+        mKey.interestOps(mKey.interestOps() & ~SelectionKey.OP_READ);
+        closeIfFinished();
+    }
+
+    private synchronized void commandCompleted() {
+        mBusy = false;
+        mLastActivity = System.currentTimeMillis();
+        processCommands();
+        closeIfFinished();
+    }
+
+    private synchronized void taggedCommandCompleted() {
+        mTaggedCommandsInProgress--;
+        mLastActivity = System.currentTimeMillis();
+        closeIfFinished();
+    }
+
+    private void closeIfFinished() {
+        if (mEndOfInput && !mBusy && mTaggedCommandsInProgress == 0 && mPendingCommands.isEmpty()) close();
+    }
+
+    private synchronized void processCommands() {
+        // the lines already pending when a batch starts collecting are not
+        // its steps: only lines after its BATCH line are
+        final boolean batchAlreadyCollecting = mBatchSteps != null;
+
+        Iterator<String> it = mPendingCommands.iterator();
+        while (it.hasNext() && !mCloseRequested) {
+            final String line = it.next();
+            final boolean isBatchStep = mBatchSteps != null && !batchAlreadyCollecting;
+            if (!isBatchStep && mBusy && !line.startsWith("#")) {
+                // untagged lines wait for the untagged command in progress,
+                // but tagged ones needn't. The lines after a waiting BATCH
+                // belong to it, so they must wait as well
+                if (isBatchStart(line)) break;
+                continue;
+            }
+            it.remove();
+            if (isBatchStep) {
+                batchLineReceived(line);
+            } else {
+                processLine(line);
+            }
+        }
+    }
+
+    private void processLine(final String line) {
+        if (line.trim().isEmpty()) {
+            mChannel.writePrompt();
+            return;
+        }
+
+        Utils.log(LogLevel.INFO, LogLevels.COMMAND_SERVER, () -> "CommandServer received command: " + line);
+        if (line.startsWith("#")) {
+            processTaggedCommand(line);
+        } else if (isBatchStart(line)) {
+            startBatch(mChannel);
+        } else if (CommandDispatcher.isLongRunning(line)) {
+            mBusy = true;
+            mServer.executeCommand(() -> {
+                try {
+                    new CommandDispatcher(mChannel).dispatch(line);
+                } catch (Exception e) {
+                    Utils.logException(e);
+                } finally {
+                    commandCompleted();
+                }
+            });
+        } else {
+            dispatch(mChannel, line);
+        }
+    }
+
+    private void processTaggedCommand(String line) {
+        String[] parts = line.substring(1).trim().split("\\s+", 2);
+        final CommandChannel channel = new CommandChannel(this, parts[0]);
+        if (parts[0].isEmpty() || parts.length < 2) {
+            channel.writeNack("Command missing");
+            return;
+        }
+
+        final String cmd = parts[1];
+        if (isBatchStart(cmd)) {
+            startBatch(channel);
+        } else if (CommandDispatcher.isLongRunning(cmd)) {
+            mTaggedCommandsInProgress++;
+            mServer.executeCommand(() -> {
+                try {
+                    new CommandDispatcher(channel).dispatch(cmd);
+                } catch (Exception e) {
+                    Utils.logException(e);
+                    channel.writeNack("Command failed");
+                } finally {
+                    taggedCommandCompleted();
+                }
+            });
+        } else {
+            dispatch(channel, cmd);
+        }
+    }
+
+    private static boolean isBatchStart(String cmd) {
+        return cmd.trim().equalsIgnoreCase("BATCH");
+    }
+
+    private void startBatch(CommandChannel channel) {
+        mBatchSteps = new ArrayList<>();
+        mBatchChannel = channel;
+    }
+
+    private void batchLineReceived(String line) {
+        final String step = line.trim();
+        if (!step.equalsIgnoreCase("END")) {
+            // any steps beyond the limit are discarded, and the batch is
+            // rejected when END is received
+            if (!step.isEmpty() && mBatchSteps.size() <= CommandBatch.MAX_STEPS) mBatchSteps.add(step);
+            return;
+        }
+
+        final List<String> steps = mBatchSteps;
+        final CommandChannel channel = mBatchChannel;
+        mBatchSteps = null;
+        mBatchChannel = null;
+
+        Utils.logToConsole("CommandServer received batch of " + steps.size() + " steps: " + steps);
+        if (steps.size() > CommandBatch.MAX_STEPS) {
+            Utils.logError("CommandServer: batch from " + mRemoteAddress + " has too many steps");
+            channel.writeNack("BATCH has more than " + CommandBatch.MAX_STEPS + " steps");
+            channel.writePrompt();
+            return;
+        }
+
+        final boolean tagged = channel.getTag() != null;
+        if (tagged) {
+            mTaggedCommandsInProgress++;
+        } else {
+            mBusy = true;
+        }
+        mServer.executeCommand(() -> {
+            try {
+                new CommandBatch(channel, steps).execute();
+                channel.writePrompt();
+            } catch (Exception e) {
+                Utils.logException(e);
+                channel.writeNack("BATCH failed");
+            } finally {
+                if (tagged) {
+                    taggedCommandCompleted();
+                } else {
+                    commandCompleted();
+                }
+            }
+        });
+    }
+
+    private void dispatch(CommandChannel channel, String cmd) {
+        try {
+            new CommandDispatcher(channel).dispatch(cmd);
+        } catch (Exception e) {
+            Utils.logException(e);
+            channel.writeNack("Command failed: " + cmd);
+        }
+    }
+
+    /**
+     * Writes the specified text to the client, optionally followed by a
+     * newline.
+     */
+    synchronized void write(String message, boolean addNewline) {
+        if (mClosed || mCloseRequested) return;
+
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (addNewline) {
+            bytes = Arrays.copyOf(bytes, bytes.length + NEWLINE.length);
+            System.arraycopy(NEWLINE, 0, bytes, bytes.length - NEWLINE.length, NEWLINE.length);
+        }
+        mOutQueue.add(ByteBuffer.wrap(bytes));
+        flush();
+    }
+
+    /**
+     * Writes an event notification line to the client, unless the number of
+     * lines waiting to be sent has reached the specified limit, in which case
+     * nothing is written and false is returned.
+     */
+    synchronized boolean writeEvent(String message, int maxQueued) {
+        if (mOutQueue.size() >= maxQueued) return false;
+        write(message, true);
+        return true;
+    }
+
+    /*
+     * must be called while synchronized on this
+     */
+    private void flush() {
+        try {
+            while (!mOutQueue.isEmpty()) {
+                ByteBuffer buffer = mOutQueue.peek();
+                mSocketChannel.write(buffer);
+                if (buffer.hasRemaining()) break;
+                mOutQueue.poll();
+            }
+        } catch (IOException e) {
+            // most likely the connection was reset by the client
+            Utils.logException(e);
+            closeNow();
+            return;
+        }
+
+        if (mOutQueue.isEmpty()) {
+            if (mCloseRequested) {
+                closeNow();
+            } else if (mWriteInterest) {
+                setWriteInterest(false);
+            }
+        } else if (!mWriteInterest) {
+            setWriteInterest(true);
+        }
+    }
+
+    private void setWriteInterest(final boolean value) {
+        mWriteInterest = value;
+        mServer.runOnSelectorThread(() -> {
+            if (!mKey.isValid()) return;
+            if (value) {
+                mKey.interestOps(mKey.interestOps() | SelectionKey.OP_WRITE);
+            } else {
+                mKey.interestOps(mKey.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        });
+    }
+
+    private void closeNow() {
+        if (mClosed) return;
+        mClosed = true;
+        mOutQueue.clear();
+        IbcEvents.getInstance().unsubscribe(this);
+
+        Utils.log(LogLevel.INFO, LogLevels.COMMAND_SERVER, () -> "Closing command channel");
+        mKey.cancel();
+        try {
+            mSocketChannel.close();
+        } catch (IOException e) {
+            // ignore
+            Utils.logException(e);
+        }
+        mServer.connectionClosed(this);
+    }
+
+}
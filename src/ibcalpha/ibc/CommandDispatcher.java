@@ -18,46 +18,164 @@
 
 package ibcalpha.ibc;
 
+import java.awt.HeadlessException;
 import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.swing.JFrame;
 
-class CommandDispatcher
-        implements Runnable {
+/**
+ * Executes the commands received on a CommandChannel.
+ */
+class CommandDispatcher {
 
     private final CommandChannel mChannel;
 
-    private final static int SHORTCUT_MODIFIERS = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask() | KeyEvent.ALT_DOWN_MASK;
+    private final static int SHORTCUT_MODIFIERS = getShortcutModifiers();
 
             
     CommandDispatcher(CommandChannel channel) {
         mChannel = channel;
     }
 
-    @Override public void run() {
-        String cmd = mChannel.getCommand();
-        while (cmd != null) {
-            if (cmd.equalsIgnoreCase("EXIT")) {
+    /**
+     * Indicates whether the specified command may take a long time, and so
+     * must not be executed on the CommandServer's selector thread. Only
+     * commands that work purely on IBC's own state in memory (STATUS,
+     * SUBSCRIBE, UNSUBSCRIBE and EXIT) are executed on the selector thread:
+     * anything that waits for or interacts with TWS is long running.
+     */
+    static boolean isLongRunning(String cmd) {
+        switch (getVerb(cmd)) {
+            case "STOP":
+            case "ENABLEAPI":
+            case "RECONNECTDATA":
+            case "RECONNECTACCOUNT":
+            case "RESTART":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the configuration action that carries out the specified
+     * command, if it works by changing settings in the Global Configuration
+     * dialog, so that several such commands in a batch can share one opening
+     * of the dialog. Otherwise returns null, and the command must be
+     * dispatched in the usual way.
+     */
+    static ConfigurationAction getConfigurationAction(String cmd, CommandChannel channel) {
+        switch (getVerb(cmd)) {
+            case "ENABLEAPI":
+                // the Gateway case is rejected by dispatch()
+                if (!getArgs(cmd).isEmpty() || SessionManager.isGateway()) return null;
+                return new EnableApiTask(channel);
+            default:
+                return null;
+        }
+    }
+
+    void dispatch(String cmd) {
+        final long startTime = System.nanoTime();
+        final String verb = getVerb(cmd);
+
+        final boolean valid = dispatch(verb, getArgs(cmd));
+        if (!valid) {
+            handleInvalidCommand(cmd);
+            mChannel.writePrompt();
+        }
+
+        IbcMetrics.getInstance().commands.increment(valid ? verb : "invalid");
+        IbcMetrics.getInstance().commandDuration.observeSince(startTime);
+        Utils.logEvent(new LogEvent(LogLevel.INFO, LogLevels.COMMAND_SERVER, valid ? "commandCompleted" : "commandInvalid")
+                            .command(cmd)
+                            .duration((System.nanoTime() - startTime) / 1000000));
+    }
+
+    /*
+     * returns false if the command is not valid
+     */
+    private boolean dispatch(String verb, String args) {
+        switch (verb) {
+            case "EXIT":
+                if (!args.isEmpty()) break;
                 mChannel.writeAck("Goodbye");
-                break;
-            } else if (cmd.equalsIgnoreCase("STOP")) {
+                mChannel.closeConnection();
+                return true;
+            case "STOP":
+                if (!args.isEmpty()) break;
                 handleStopCommand();
-            } else if (cmd.equalsIgnoreCase("ENABLEAPI")) {
+                mChannel.writePrompt();
+                return true;
+            case "ENABLEAPI":
+                if (!args.isEmpty()) break;
                 handleEnableAPICommand();
-            } else if (cmd.equalsIgnoreCase("RECONNECTDATA")) {
-            	handleReconnectDataCommand();
-            } else if (cmd.equalsIgnoreCase("RECONNECTACCOUNT")) {
-            	handleReconnectAccountCommand();
-            } else if (cmd.equalsIgnoreCase("RESTART")) {
-            	handleRestartCommand();
-            } else {
-                handleInvalidCommand(cmd);
-            }
-            mChannel.writePrompt();
-            cmd = mChannel.getCommand();
+                mChannel.writePrompt();
+                return true;
+            case "RECONNECTDATA":
+                if (!args.isEmpty()) break;
+                handleReconnectDataCommand();
+                mChannel.writePrompt();
+                return true;
+            case "RECONNECTACCOUNT":
+                if (!args.isEmpty()) break;
+                handleReconnectAccountCommand();
+                mChannel.writePrompt();
+                return true;
+            case "RESTART":
+                if (!args.isEmpty()) break;
+                handleRestartCommand();
+                mChannel.writePrompt();
+                return true;
+            case "STATUS":
+                if (!args.isEmpty() && !args.equalsIgnoreCase("JSON")) break;
+                handleStatusCommand(!args.isEmpty());
+                mChannel.writePrompt();
+                return true;
+            case "SUBSCRIBE":
+                handleSubscribeCommand(args);
+                mChannel.writePrompt();
+                return true;
+            case "UNSUBSCRIBE":
+                if (!args.isEmpty()) break;
+                IbcEvents.getInstance().unsubscribe(mChannel.getConnection());
+                mChannel.writeAck("Unsubscribed");
+                mChannel.writePrompt();
+                return true;
+        }
+        return false;
+    }
+
+    private static int getShortcutModifiers() {
+        try {
+            return Toolkit.getDefaultToolkit().getMenuShortcutKeyMask() | KeyEvent.ALT_DOWN_MASK;
+        } catch (HeadlessException e) {
+            // there's no keyboard to send shortcuts to, but the other
+            // commands must still work (eg in the command server load test)
+            return KeyEvent.CTRL_MASK | KeyEvent.ALT_DOWN_MASK;
         }
-        mChannel.close();
+    }
+
+    private static String getVerb(String cmd) {
+        String trimmed = cmd.trim();
+        int i = indexOfWhitespace(trimmed);
+        return (i < 0 ? trimmed : trimmed.substring(0, i)).toUpperCase();
+    }
+
+    private static String getArgs(String cmd) {
+        String trimmed = cmd.trim();
+        int i = indexOfWhitespace(trimmed);
+        return i < 0 ? "" : trimmed.substring(i).trim();
+    }
+
+    private static int indexOfWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) return i;
+        }
+        return -1;
     }
 
     private void handleInvalidCommand(String cmd) {
@@ -109,6 +227,30 @@ class CommandDispatcher
         mChannel.writeAck("");
     }
 
+    private void handleStatusCommand(boolean json) {
+        // the snapshot is maintained as the state changes, so there's no
+        // need to look at TWS itself here
+        IbcStatus.Snapshot snapshot = IbcStatus.getInstance().getSnapshot();
+        mChannel.writeAck(json ? snapshot.toJson() : snapshot.toText());
+    }
+
+    private void handleSubscribeCommand(String args) {
+        Set<String> topics = new LinkedHashSet<>();
+        if (args.isEmpty()) {
+            topics.addAll(IbcEvents.TOPICS);
+        } else {
+            for (String topic : args.toLowerCase().split("[\\s,]+")) {
+                if (!IbcEvents.TOPICS.contains(topic)) {
+                    mChannel.writeNack("Unknown topic: " + topic);
+                    return;
+                }
+                topics.add(topic);
+            }
+        }
+        IbcEvents.getInstance().subscribe(mChannel.getConnection(), topics);
+        mChannel.writeAck("Subscribed: " + String.join(" ", topics));
+    }
+
     private void handleStopCommand() {
         (new StopTask(mChannel, false, "STOP command")).run();     // run on the current thread
     }
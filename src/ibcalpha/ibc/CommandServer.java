@@ -20,54 +20,110 @@ package ibcalpha.ibc;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Accepts connections from command clients and reads their commands.
+ *
+ * All connections are serviced by a single thread using a non-blocking
+ * Selector, so an idle or half-open connection costs nothing but a socket.
+ * Commands that take effect immediately are executed on that thread, while
+ * those that may take a long time (see CommandDispatcher.isLongRunning) are
+ * passed to a small, bounded pool of worker threads. A connection's commands
+ * are always executed one at a time, in the order they were received.
+ */
 class CommandServer
         implements Runnable {
 
-    private ServerSocket mSocket = null;
+    private static final int WORKER_THREADS = 4;
+
+    private Selector mSelector;
+    private ServerSocketChannel mServerChannel;
+    private ServerSocketChannel mUnixServerChannel;
+    private final String mSocketPath = Settings.settings().getString("CommandServerSocketPath", "");
     private volatile boolean mQuitting = false;
 
+    private final Set<CommandConnection> mConnections = ConcurrentHashMap.newKeySet();
+    private final Queue<Runnable> mSelectorTasks = new ConcurrentLinkedQueue<>();
+
+    private final int mBacklog = Settings.settings().getInt("CommandServerBacklog", 5);
+    private final int mMaxConnections = getIntSetting("CommandServerMaxConnections", 20, 1);
+    private final long mIdleTimeoutMillis = getIntSetting("CommandServerIdleTimeout", 0, 0) * 1000L;
+
+    private final ExecutorService mWorkers;
+
+    private ControlFromList mControlFrom;
+
     private static CommandServer _commandServer;
 
 
     CommandServer() {
         if (_commandServer != null) throw new IllegalArgumentException();
         _commandServer = this;
+
+        mWorkers = MyCachedThreadPool.newWorkerPool("CommandServer-worker", WORKER_THREADS);
+
+        IbcMetrics.getInstance().gauge("ibc_command_connections_open", "Command server connections currently open", mConnections::size);
     }
     
     public static CommandServer commandServer() {
         return _commandServer;
     }
 
+    /*
+     * Returns the value of the specified setting, or the default value if
+     * the setting is less than the specified minimum
+     */
+    private static int getIntSetting(String name, int defaultValue, int minimum) {
+        int value = Settings.settings().getInt(name, defaultValue);
+        if (value >= minimum) return value;
+        Utils.logError("the " + name + " setting '" + value + "' is invalid: it must be at least " + minimum + ", so " + defaultValue + " will be used");
+        return defaultValue;
+    }
+
     @Override
     public void run() {
         Thread.currentThread().setName("CommandServer");
 
         final int port = Settings.settings().getInt("CommandServerPort", 0);
-        if (port == 0) {
+        if (port == 0 && mSocketPath.isEmpty()) {
             Utils.logToConsole("CommandServer is not started because the port is not configured");
             return;
         }
 
-        Utils.logToConsole("CommandServer is starting with port " + port);
+        if (port != 0) {
+            Utils.logToConsole("CommandServer is starting with port " + port);
 
-        if (createSocket(port)) {
-            Utils.logToConsole("CommandServer started and is ready to accept commands");
-            for (; !mQuitting;) {
-                // this will return null if the shutDown method is called
-                Socket socket = getClient();
+            mControlFrom = ControlFromList.create(Settings.settings().getString("ControlFrom", ""));
+            Utils.logToConsole("CommandServer: ControlFrom setting = " + mControlFrom);
+        }
 
-                if (socket != null) {
-                    MyCachedThreadPool.getInstance().execute(new CommandDispatcher(new CommandChannel(socket)));
-                }
+        if (createSockets(port)) {
+            Utils.logToConsole("CommandServer started and is ready to accept commands");
+            try {
+                serviceConnections();
+            } catch (IOException e) {
+                Utils.logException(e);
             }
+            closeAll();
         }
 
         Utils.logToConsole("CommandServer is shutdown");
@@ -75,76 +131,210 @@ class CommandServer
 
     public void shutdown() {
         mQuitting = true;
-        if (mSocket != null) {
-            try {
-                Utils.logToConsole("CommandServer closing");
-                mSocket.close();
-            } catch (IOException ex) {
-                Utils.logException(ex);
-            }
-            mSocket = null;
+        if (mSelector != null) {
+            Utils.logToConsole("CommandServer closing");
+            mSelector.wakeup();
+        }
+    }
+
+    /**
+     * Runs the specified task on the selector thread, which is the only
+     * thread that may change a connection's interest set.
+     */
+    void runOnSelectorThread(Runnable task) {
+        mSelectorTasks.add(task);
+        if (mSelector != null) mSelector.wakeup();
+    }
+
+    /**
+     * Runs a long-running command on one of the worker threads.
+     */
+    void executeCommand(Runnable command) {
+        mWorkers.execute(command);
+    }
+
+    void connectionClosed(CommandConnection connection) {
+        mConnections.remove(connection);
+    }
+
+    private boolean createSockets(final int port) {
+        try {
+            mSelector = Selector.open();
+        } catch (IOException e) {
+            Utils.logException(e);
+            Utils.logToConsole("CommandServer cannot process commands");
+            return false;
         }
+
+        // if both a port and a socket path are configured, the server runs
+        // as long as either can be used
+        boolean tcpCreated = port != 0 && createTcpSocket(port);
+        boolean unixCreated = !mSocketPath.isEmpty() && createUnixSocket();
+        if (!tcpCreated && !unixCreated) {
+            Utils.logToConsole("CommandServer cannot process commands");
+            closeAll();
+            return false;
+        }
+        return true;
     }
 
-    private boolean createSocket(final int port) {
-        final int backlog = 5;
+    private boolean createTcpSocket(final int port) {
         try {
+            mServerChannel = ServerSocketChannel.open();
+            mServerChannel.configureBlocking(false);
+
             final String bindaddr = Settings.settings().getString("BindAddress", "");
             if (!bindaddr.isEmpty()) {
-                mSocket = new ServerSocket(port,
-                                            backlog,
-                                            InetAddress.getByName(bindaddr));
+                mServerChannel.bind(new InetSocketAddress(InetAddress.getByName(bindaddr), port), mBacklog);
                 Utils.logToConsole("CommandServer listening on address: " +
                                    bindaddr + " port: " +
                                    java.lang.String.valueOf(port));
             } else {
-                mSocket = new ServerSocket(port, backlog);
+                mServerChannel.bind(new InetSocketAddress(port), mBacklog);
                 Utils.logToConsole("CommandServer listening on addresses: " +
                                    getAddresses() + "; port: " +
                                    java.lang.String.valueOf(port));
             }
-        } catch (java.net.BindException e) {
-            Utils.logException(e);
-            Utils.logToConsole("CommandServer failed to create socket");
-            Utils.logToConsole("CommandServer cannot process commands");
-            mSocket = null;
-            return false;
+            mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
             Utils.logException(e);
             Utils.logToConsole("CommandServer failed to create socket");
-            Utils.logToConsole("CommandServer cannot process commands");
-            mSocket = null;
+            closeServerChannel();
             return false;
         }
         return true;
     }
 
-    private Socket getClient() {
+    private boolean createUnixSocket() {
         try {
-            if (mSocket.isClosed()) return null;
-            
-            final Socket socket = mSocket.accept();
-
-            final String allowedAddresses = Settings.settings().getString("ControlFrom", "");
-            Utils.logToConsole("CommandServer: ControlFrom setting = " + allowedAddresses);
-
-            if (!isPermittedClient(socket, allowedAddresses)) {
-                Utils.logToConsole("CommandServer denied access to: " +
-                                    socket.getInetAddress().toString());
-                socket.close();
-                return null;
+            mUnixServerChannel = UnixDomainSockets.open(mSocketPath, mBacklog);
+            mUnixServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+            Utils.logToConsole("CommandServer listening on Unix domain socket: " + mSocketPath);
+        } catch (IOException e) {
+            Utils.logError("CommandServer failed to create Unix domain socket " + mSocketPath + ": " + e.getMessage());
+            closeUnixServerChannel();
+            return false;
+        }
+        return true;
+    }
+
+    private void serviceConnections() throws IOException {
+        // when idle connections are to be closed, make sure we wake up often
+        // enough to notice them
+        final long selectTimeout = (mIdleTimeoutMillis == 0) ? 0 : Math.max(1000, mIdleTimeoutMillis / 4);
+
+        while (!mQuitting) {
+            mSelector.select(selectTimeout);
+
+            Runnable task;
+            while ((task = mSelectorTasks.poll()) != null) task.run();
+
+            Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else {
+                        CommandConnection connection = (CommandConnection) key.attachment();
+                        if (key.isWritable()) connection.onWritable();
+                        if (key.isValid() && key.isReadable()) connection.onReadable();
+                    }
+                } catch (Exception e) {
+                    // don't let a problem with one connection affect the others
+                    Utils.logException(e);
+                    if (key.attachment() instanceof CommandConnection) ((CommandConnection) key.attachment()).close();
+                }
             }
-             
-            Utils.logToConsole("CommandServer accepted connection from: " + socket.getInetAddress().toString());
-            return socket;
-
-        } catch (java.net.SocketException e) {
-            // occurs if mSocket is closed during the call to mSocket.accept()
-            return null;
-        } catch (Exception e) {
-            Utils.logException(e);
-            return null;
+
+            if (mIdleTimeoutMillis != 0) closeIdleChannels();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        final SocketChannel socketChannel = serverChannel.accept();
+        if (socketChannel == null) return;
+
+        final String remoteAddress;
+        if (serverChannel == mUnixServerChannel) {
+            // access to a Unix domain socket is controlled by its file
+            // permissions
+            remoteAddress = "unix:" + mSocketPath;
+        } else {
+            final Socket socket = socketChannel.socket();
+            remoteAddress = socket.getInetAddress().toString();
+            if (!isPermittedClient(socket.getInetAddress())) {
+                IbcMetrics.getInstance().commandConnectionsRefused.increment();
+                Utils.logToConsole("CommandServer denied access to: " + remoteAddress);
+                socketChannel.close();
+                return;
+            }
+        }
+
+        if (mConnections.size() >= mMaxConnections) {
+            IbcMetrics.getInstance().commandConnectionsRefused.increment();
+            Utils.logToConsole("CommandServer refused connection from: " + remoteAddress + 
+                                ": already has the maximum of " + mMaxConnections + " connections");
+            // best effort: the client may not be reading yet
+            socketChannel.configureBlocking(false);
+            socketChannel.write(ByteBuffer.wrap(("ERROR Too many connections" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8)));
+            socketChannel.close();
+            return;
+        }
+
+        IbcMetrics.getInstance().commandConnections.increment();
+        Utils.logEvent(new LogEvent(LogLevel.INFO, LogLevels.COMMAND_SERVER, "connectionAccepted")
+                            .message("CommandServer accepted connection from: " + remoteAddress));
+        socketChannel.configureBlocking(false);
+        SelectionKey key = socketChannel.register(mSelector, SelectionKey.OP_READ);
+        CommandConnection connection = new CommandConnection(this, socketChannel, key, remoteAddress);
+        key.attach(connection);
+        mConnections.add(connection);
+        connection.open();
+    }
+
+    private void closeIdleChannels() {
+        final long now = System.currentTimeMillis();
+        for (CommandConnection connection : mConnections) {
+            if (connection.isIdleSince(now - mIdleTimeoutMillis)) {
+                Utils.logToConsole("CommandServer closing idle connection from: " + connection.getRemoteAddress());
+                connection.close();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (CommandConnection connection : mConnections) connection.close();
+        closeServerChannel();
+        closeUnixServerChannel();
+        try {
+            if (mSelector != null) mSelector.close();
+        } catch (IOException ex) {
+            Utils.logException(ex);
         }
+        mWorkers.shutdown();
+    }
+
+    private void closeServerChannel() {
+        try {
+            if (mServerChannel != null) mServerChannel.close();
+        } catch (IOException ex) {
+            Utils.logException(ex);
+        }
+        mServerChannel = null;
+    }
+
+    private void closeUnixServerChannel() {
+        if (mUnixServerChannel == null) return;
+        try {
+            mUnixServerChannel.close();
+        } catch (IOException ex) {
+            Utils.logException(ex);
+        }
+        mUnixServerChannel = null;
+        UnixDomainSockets.delete(mSocketPath);
     }
 
     private String getAddresses() {
@@ -176,18 +366,8 @@ class CommandServer
         return addressList;
     }
     
-    private boolean isPermittedClient(final Socket socket, final String allowedAddresses) {
-        if (socket.getInetAddress().getHostAddress().equals(mSocket.getInetAddress().getHostAddress())) return true;
-        
-        if (socket.getInetAddress().getHostAddress().equals(InetAddress.getLoopbackAddress().getHostAddress())) return true;
-
-        for (String allowedClient : allowedAddresses.split(",")){
-            if (allowedClient.equals(socket.getInetAddress().getHostAddress()) ||
-                allowedClient.equalsIgnoreCase(socket.getInetAddress().getHostName())) {
-                return true;
-            }
-        }
-        
-        return false;
+    private boolean isPermittedClient(final InetAddress address) {
+        if (address.equals(mServerChannel.socket().getInetAddress())) return true;
+        return mControlFrom.permits(address);
     }
 }
@@ -0,0 +1,198 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.AbstractButton;
+import javax.swing.JRootPane;
+import javax.swing.RootPaneContainer;
+
+/**
+ * An index of the components within a container hierarchy, built with a
+ * single traversal of the hierarchy.
+ *
+ * Components can be looked up by type and ordinal, by type and (case
+ * insensitive) button text, and by name. The per-type lists and the text and
+ * name maps are derived from the traversal on first use, so each subsequent
+ * lookup is a map access rather than a walk of the whole hierarchy.
+ *
+ * The index for a Swing window (a JFrame or JDialog) is cached on the
+ * window's root pane, and discarded as soon as a component is added to or
+ * removed from any container within the window. Button texts and component
+ * names are checked on every lookup, and the relevant map is rebuilt if one
+ * of them has changed since the map was built, so a lookup never returns a
+ * component that doesn't currently satisfy it.
+ *
+ * For any other container, a new index is built on each request: this still
+ * means only one traversal for a series of lookups made against it.
+ *
+ * No lock of this class is held while the hierarchy is traversed, and the
+ * watcher that discards the index only clears a volatile flag. This matters
+ * because the watcher is called while AWT's tree lock is held, and the
+ * traversal takes the tree lock: taking a monitor in both places could
+ * deadlock a thread doing lookups with the event dispatch thread.
+ */
+class ComponentIndex {
+
+    private static final Object CLIENT_PROPERTY_KEY = new Object();
+
+    /**
+     * Returns an index of the components within the specified container
+     * (not including the container itself).
+     */
+    static ComponentIndex forContainer(Container container) {
+        if (!(container instanceof Window && container instanceof RootPaneContainer)) return new ComponentIndex(container);
+
+        JRootPane rootPane = ((RootPaneContainer) container).getRootPane();
+        if (rootPane == null) return new ComponentIndex(container);
+
+        Object cached = rootPane.getClientProperty(CLIENT_PROPERTY_KEY);
+        if (cached instanceof ComponentIndex && ((ComponentIndex) cached).isValid()) return (ComponentIndex) cached;
+
+        // if two threads get here at once, each builds its own index and the
+        // last one stored is the one that's cached: both are valid
+        ComponentIndex index = new ComponentIndex(container, (Window) container);
+        rootPane.putClientProperty(CLIENT_PROPERTY_KEY, index);
+        return index;
+    }
+
+    private final Component[] components;
+
+    private final Map<Class<?>, Component[]> componentsByType = new HashMap<>();
+    private final Map<Class<?>, Map<String, Component>> buttonsByText = new HashMap<>();
+    private Map<String, Component> componentsByName;
+
+    private volatile boolean valid = true;
+
+    private ComponentIndex(Container container) {
+        this(container, null);
+    }
+
+    private ComponentIndex(Container container, Window watchedWindow) {
+        // start watching before the traversal, so that a change made during
+        // the traversal isn't missed
+        if (watchedWindow != null) watch(watchedWindow);
+
+        List<Component> list = new ArrayList<>();
+        ComponentIterator.visit(container, component -> {
+            list.add(component);
+            return false;
+        });
+        components = list.toArray(new Component[list.size()]);
+    }
+
+    private void watch(Window window) {
+        ComponentTreeWatcher watcher = new ComponentTreeWatcher() {
+            @Override
+            void treeChanged() {
+                // the invalid index stays cached until forContainer replaces it
+                if (!valid) return;
+                valid = false;
+                unwatch(window);
+            }
+        };
+        watcher.watch(window);
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Returns all the components of the specified type, in traversal order.
+     */
+    synchronized <T extends Component> List<T> getComponents(Class<T> type) {
+        List<T> list = new ArrayList<>();
+        for (Component component : getComponentsOfType(type)) list.add(type.cast(component));
+        return list;
+    }
+
+    /**
+     * Returns the ith component of the specified type (0 based indexing), or
+     * null if there are not that many.
+     */
+    synchronized <T extends Component> T find(Class<T> type, int ith) {
+        Component[] ofType = getComponentsOfType(type);
+        if (ith < 0 || ith >= ofType.length) return null;
+        return type.cast(ofType[ith]);
+    }
+
+    /**
+     * Returns the first button of the specified type whose text equals the
+     * specified text (ignoring case), or null if there is none.
+     */
+    synchronized <T extends AbstractButton> T findByText(Class<T> type, String text) {
+        Map<String, Component> byText = buttonsByText.get(type);
+        if (byText != null) {
+            Component component = byText.get(text.toLowerCase());
+            if (component != null && text.equalsIgnoreCase(((AbstractButton) component).getText())) return type.cast(component);
+        }
+
+        // not known, or the button text has changed since the map was built
+        byText = new HashMap<>();
+        for (Component component : getComponentsOfType(type)) {
+            String buttonText = ((AbstractButton) component).getText();
+            if (buttonText != null) byText.putIfAbsent(buttonText.toLowerCase(), component);
+        }
+        buttonsByText.put(type, byText);
+
+        Component component = byText.get(text.toLowerCase());
+        return (component == null) ? null : type.cast(component);
+    }
+
+    /**
+     * Returns the first component whose name equals the specified text
+     * (ignoring case), or null if there is none.
+     */
+    synchronized Component findByName(String text) {
+        if (componentsByName != null) {
+            Component component = componentsByName.get(text.toLowerCase());
+            if (component != null && text.equalsIgnoreCase(component.getName())) return component;
+        }
+
+        // not known, or the name has changed since the map was built
+        componentsByName = new HashMap<>();
+        for (Component component : components) {
+            String name = component.getName();
+            if (name != null) componentsByName.putIfAbsent(name.toLowerCase(), component);
+        }
+        return componentsByName.get(text.toLowerCase());
+    }
+
+    private Component[] getComponentsOfType(Class<?> type) {
+        Component[] ofType = componentsByType.get(type);
+        if (ofType == null) {
+            List<Component> list = new ArrayList<>();
+            for (Component component : components) {
+                if (type.isInstance(component)) list.add(component);
+            }
+            ofType = list.toArray(new Component[list.size()]);
+            componentsByType.put(type, ofType);
+        }
+        return ofType;
+    }
+
+}
@@ -20,26 +20,91 @@ package ibcalpha.ibc;
 
 import java.awt.Component;
 import java.awt.Container;
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-
+import java.util.function.Predicate;
+
+/**
+ * Traverses a container hierarchy depth first, in the same order as the
+ * components are laid out in their containers. The container itself is not
+ * included.
+ *
+ * Children are read in place with getComponentCount() and getComponent(i),
+ * rather than by copying each container's child array, and the traversal
+ * state is held in a pair of arrays that are only reallocated if the
+ * hierarchy is deeper than any encountered before, so no per-component
+ * objects are allocated.
+ *
+ * When the whole hierarchy is to be examined, the static visit() method
+ * should be preferred: it holds the AWT tree lock for the entire traversal
+ * rather than acquiring it at each step, and it stops as soon as the visitor
+ * is satisfied.
+ */
 class ComponentIterator implements Iterator<Component> {
 
-    Deque<NodeState> mStack = new ArrayDeque<>();
+    private static final int INITIAL_DEPTH = 32;
+
+    private static final ThreadLocal<Traversal> traversals = ThreadLocal.withInitial(Traversal::new);
+
+    private final Traversal traversal = new Traversal();
 
-    Component mCurrent;
+    private final Object treeLock;
+
+    private Component mCurrent;
 
     ComponentIterator(Container container) {
         if (container == null) Utils.exitWithException(ErrorCodes.UNHANDLED_EXCEPTION,new NullPointerException());
-        mStack.push(new NodeState(container));
+        treeLock = container.getTreeLock();
+        traversal.push(container);
+    }
+
+    /**
+     * Visits the components in a container hierarchy (not including the
+     * container itself) in the same order as a ComponentIterator, until the
+     * visitor returns true.
+     *
+     * The AWT tree lock is held throughout, so the visitor must not do
+     * anything that needs another thread to acquire it.
+     * @param container
+     *  the Container whose hierarchy is to be visited
+     * @param visitor
+     *  called for each component in turn: returns true to end the traversal
+     * @return
+     *  the component for which the visitor returned true, or null if it
+     *  never did
+     */
+    static Component visit(Container container, Predicate<Component> visitor) {
+        if (container == null) Utils.exitWithException(ErrorCodes.UNHANDLED_EXCEPTION,new NullPointerException());
+
+        // the visitor might itself start a traversal on this thread, in which
+        // case that one gets a stack of its own
+        Traversal traversal = traversals.get();
+        if (traversal.inUse) traversal = new Traversal();
+
+        traversal.inUse = true;
+        try {
+            synchronized (container.getTreeLock()) {
+                traversal.push(container);
+                Component component;
+                while ((component = traversal.next()) != null) {
+                    if (visitor.test(component)) return component;
+                }
+                return null;
+            }
+        } finally {
+            traversal.clear();
+            traversal.inUse = false;
+        }
     }
 
     @Override
     public boolean hasNext() {
-        if (mCurrent == null)  return moveNext();
-        return true;
+        if (mCurrent == null) {
+            synchronized (treeLock) {
+                mCurrent = traversal.next();
+            }
+        }
+        return mCurrent != null;
     }
 
     @Override
@@ -55,35 +120,53 @@ class ComponentIterator implements Iterator<Component> {
         throw new UnsupportedOperationException("Not supported");
     }
 
-    private boolean moveNext() {
-        if (mStack.isEmpty()) return false;
-        while (true) {
-            NodeState currentState = mStack.peek();
-            if (currentState.subComponents == null) {
-                mStack.pop();
-                if (mStack.isEmpty()) return false;
-            } else {
-                if (currentState.index < currentState.subComponents.length) {
-                    mCurrent = currentState.subComponents[currentState.index++];
-                    mStack.push(new NodeState(mCurrent));
-                    return true;
-                } else {
-                    mStack.pop();
-                    if (mStack.isEmpty()) return false;
-                }
+    /**
+     * The traversal state: for each level of the hierarchy currently being
+     * traversed, the container and the index of the next child to visit.
+     *
+     * Must be used while holding the tree lock.
+     */
+    private static class Traversal {
+        Container[] containers = new Container[INITIAL_DEPTH];
+        int[] indexes = new int[INITIAL_DEPTH];
+        int depth;
+        boolean inUse;
+
+        void push(Container container) {
+            if (depth == containers.length) {
+                Container[] newContainers = new Container[depth * 2];
+                System.arraycopy(containers, 0, newContainers, 0, depth);
+                containers = newContainers;
+                int[] newIndexes = new int[depth * 2];
+                System.arraycopy(indexes, 0, newIndexes, 0, depth);
+                indexes = newIndexes;
             }
+            containers[depth] = container;
+            indexes[depth] = 0;
+            depth++;
         }
-    }
 
-    private class NodeState {
-        int index;
-        Component[] subComponents;
+        Component next() {
+            while (depth > 0) {
+                Container container = containers[depth - 1];
+                int index = indexes[depth - 1];
+
+                // getComponentCount() is checked each time in case the
+                // container has changed between steps of an iterator
+                if (index < container.getComponentCount()) {
+                    indexes[depth - 1] = index + 1;
+                    Component component = container.getComponent(index);
+                    if (component instanceof Container) push((Container) component);
+                    return component;
+                }
 
-        NodeState(Component component) {
-            synchronized (component.getTreeLock()){
-                this.index = 0;
-                if (component instanceof Container) subComponents = ((Container)component).getComponents();
+                containers[--depth] = null;
             }
+            return null;
+        }
+
+        void clear() {
+            while (depth > 0) containers[--depth] = null;
         }
     }
 
@@ -0,0 +1,75 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+
+/**
+ * Notifies a subclass when a component is added to or removed from any
+ * container within a component hierarchy.
+ *
+ * A ContainerListener only hears about a container's immediate children, so
+ * the watcher registers itself with every container in the hierarchy. It does
+ * not register with containers added later: a subclass is expected to treat
+ * the first change as invalidating whatever it has derived from the hierarchy,
+ * and to stop watching.
+ */
+abstract class ComponentTreeWatcher implements ContainerListener {
+
+    /**
+     * Called when a component has been added to or removed from a container
+     * within the watched hierarchy.
+     */
+    abstract void treeChanged();
+
+    void watch(Container root) {
+        root.addContainerListener(this);
+        ComponentIterator iter = new ComponentIterator(root);
+        while (iter.hasNext()) {
+            Component component = iter.next();
+            if (component instanceof Container) ((Container) component).addContainerListener(this);
+        }
+    }
+
+    void unwatch(Container root) {
+        root.removeContainerListener(this);
+        ComponentIterator iter = new ComponentIterator(root);
+        while (iter.hasNext()) {
+            Component component = iter.next();
+            if (component instanceof Container) ((Container) component).removeContainerListener(this);
+        }
+    }
+
+    @Override
+    public void componentAdded(ContainerEvent e) {
+        treeChanged();
+    }
+
+    @Override
+    public void componentRemoved(ContainerEvent e) {
+        // the removed component is no longer part of the hierarchy
+        if (e.getChild() instanceof Container) unwatch((Container) e.getChild());
+        treeChanged();
+    }
+
+}
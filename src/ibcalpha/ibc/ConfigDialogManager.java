@@ -95,6 +95,16 @@ public abstract class ConfigDialogManager
 
     public abstract void setApiConfigChangeConfirmationExpected();
 
+    /**
+     * Records that a change has been made to the Global Configuration dialog
+     * that must be committed (ie the dialog's OK button must be clicked) when
+     * the dialog is released, even if the user opened the dialog.
+     *
+     * The default implementation does nothing.
+     */
+    public void setCommitRequired() {
+    }
+
     public abstract void setApiConfigChangeConfirmationHandled();
 
     public abstract void setConfigDialog(JDialog window);
@@ -24,4 +24,37 @@ public interface ConfigurationAction extends Runnable{
 
     public  void initialise(JDialog configDialog);
 
+    /**
+     * Returns the path to the section of the Global Configuration dialog that
+     * this action changes. ConfigurationTransaction uses this to group
+     * actions that work on the same section.
+     * @return
+     * the config tree path, or an empty array if not known
+     */
+    default String[] getConfigSection() {
+        return new String[0];
+    }
+
+    /**
+     * Returns a description of the setting values that this action applies,
+     * used to tell whether exactly the same configuration has already been
+     * applied (see ConfigurationRecord).
+     * @return
+     * the description, or null if the action must always be run (for
+     * example because it initiates something rather than setting a value)
+     */
+    default String getFingerprint() {
+        return null;
+    }
+
+    /**
+     * Indicates whether the most recent run of this action failed to apply
+     * its settings. The reason will already have been logged.
+     * @return
+     * true if the action failed
+     */
+    default boolean hasFailed() {
+        return false;
+    }
+
 }
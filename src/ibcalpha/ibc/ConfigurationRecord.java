@@ -0,0 +1,185 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Records, in the TWS settings directory, a fingerprint of the configuration
+ * most recently applied via the Global Configuration dialog for each user.
+ *
+ * On a warm restart (ie when TWS/Gateway restarts itself using its
+ * autorestart facility), TWS reloads the settings that were in force when it
+ * shut down, so if the fingerprint of the configuration IBC would apply
+ * matches the recorded one, there is no need to open the Global
+ * Configuration dialog at all.
+ *
+ * The record for a user is discarded whenever the user opens the Global
+ * Configuration dialog manually (since they may have changed something IBC
+ * had set), and is only ever trusted on a warm restart: on a cold start the
+ * configuration is always applied.
+ *
+ * TWS's own settings files are encrypted, so their contents can't be checked
+ * against the record. Instead, before TWS is started, IBC notes when TWS last
+ * saved its settings (ie the latest modification time of the settings files
+ * in the user subdirectories of the TWS settings directory), and the record is
+ * only trusted if that is later than the time the configuration was applied.
+ * This shows that the settings TWS is about to load were saved after IBC
+ * applied the configuration, rather than (for example) TWS having been
+ * killed before it could save them, or the settings having been restored
+ * from elsewhere.
+ */
+class ConfigurationRecord {
+
+    private static final String RECORD_FILE_NAME = "ibc-applied-configuration.properties";
+
+    private static final String APPLIED_TIME_SUFFIX = ".appliedTime";
+
+    private static File recordFile;
+
+    private static long settingsSavedTime;
+
+    /**
+     * Must be called before TWS is started, so that the time TWS last saved
+     * its settings can be determined.
+     */
+    static void initialise(String twsSettingsDirectory) {
+        recordFile = new File(twsSettingsDirectory, RECORD_FILE_NAME);
+        settingsSavedTime = getSettingsSavedTime(new File(twsSettingsDirectory));
+    }
+
+    /**
+     * Indicates whether the configuration with the specified fingerprint has
+     * already been applied for the current user, and TWS's settings can be
+     * relied on to still reflect it.
+     */
+    static synchronized boolean isApplied(String fingerprint) {
+        if (recordFile == null) return false;
+        if (!SessionManager.isRestart()) return false;
+
+        Properties record = load();
+        String recorded = record.getProperty(getUser());
+        if (recorded == null || !recorded.equals(hash(fingerprint))) return false;
+
+        long appliedTime;
+        try {
+            appliedTime = Long.parseLong(record.getProperty(getUser() + APPLIED_TIME_SUFFIX, "0"));
+        } catch (NumberFormatException e) {
+            appliedTime = 0;
+        }
+        if (appliedTime == 0 || settingsSavedTime <= appliedTime) {
+            Utils.logToConsole("TWS settings have not been saved since the configuration was last applied");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the configuration with the specified fingerprint has been
+     * applied for the current user.
+     */
+    static synchronized void setApplied(String fingerprint) {
+        if (recordFile == null) return;
+        Properties record = load();
+        record.setProperty(getUser(), hash(fingerprint));
+        record.setProperty(getUser() + APPLIED_TIME_SUFFIX, Long.toString(System.currentTimeMillis()));
+        save(record);
+    }
+
+    /**
+     * Discards the record for the current user, so that the configuration is
+     * applied in full next time.
+     */
+    static synchronized void clear() {
+        if (recordFile == null || !recordFile.exists()) return;
+        Properties record = load();
+        record.remove(getUser() + APPLIED_TIME_SUFFIX);
+        if (record.remove(getUser()) != null) save(record);
+    }
+
+    /*
+     * Returns the latest modification time of the settings files that TWS
+     * keeps in the per-user subdirectories of its settings directory, or 0 if
+     * there are none
+     */
+    private static long getSettingsSavedTime(File twsSettingsDirectory) {
+        long latest = 0;
+        File[] userDirectories = twsSettingsDirectory.listFiles(File::isDirectory);
+        if (userDirectories == null) return latest;
+        for (File userDirectory : userDirectories) {
+            File[] settingsFiles = userDirectory.listFiles((dir, name) -> name.toLowerCase().endsWith(".xml"));
+            if (settingsFiles == null) continue;
+            for (File settingsFile : settingsFiles) latest = Math.max(latest, settingsFile.lastModified());
+        }
+        return latest;
+    }
+
+    private static String getUser() {
+        String user = LoginManager.loginManager().IBAPIUserName();
+        return (user == null || user.isEmpty()) ? "default" : user;
+    }
+
+    private static Properties load() {
+        Properties record = new Properties();
+        if (!recordFile.exists()) return record;
+        try (InputStream in = new FileInputStream(recordFile)) {
+            record.load(in);
+        } catch (IOException e) {
+            Utils.logError("could not read " + recordFile.getPath() + ": " + e.getMessage());
+        }
+        return record;
+    }
+
+    private static void save(Properties record) {
+        File tempFile = new File(recordFile.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                record.store(out, "Written by IBC: do not edit");
+            }
+            Files.move(tempFile.toPath(), recordFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Utils.logError("could not write " + recordFile.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    private static String hash(String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java implementation is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -40,7 +40,12 @@ public class ConfigurationTask {
     private class ConfigTaskRunner implements Runnable {
         @Override
         public void run() {
+            final long startTime = System.nanoTime();
+            boolean succeeded = false;
+            boolean dialogRequested = false;
+            IbcStatus.getInstance().configTaskStarted();
             try {
+                dialogRequested = true;
                 final JDialog configDialog = ConfigDialogManager.configDialogManager().getConfigDialog();    // blocks the thread until the config dialog is available
                 configAction.initialise(configDialog);
    
@@ -48,9 +53,20 @@ public class ConfigurationTask {
                 GuiExecutor.instance().execute(t);
                 t.get();
 
-                ConfigDialogManager.configDialogManager().releaseConfigDialog();
+                succeeded = !configAction.hasFailed();
+                IbcEvents.getInstance().publish(IbcEvents.CONFIG, configAction.getClass().getSimpleName() + (succeeded ? " completed" : " failed"));
+                if (!succeeded) IbcMetrics.getInstance().configurationFailures.increment(configAction.getClass().getSimpleName());
             } catch (Exception e){
                 Utils.logException(e);
+                IbcEvents.getInstance().publish(IbcEvents.CONFIG, configAction.getClass().getSimpleName() + " failed: " + e);
+                IbcMetrics.getInstance().configurationFailures.increment(configAction.getClass().getSimpleName());
+            } finally {
+                // getConfigDialog counts this as a user of the dialog even if
+                // it returns null or the action fails
+                if (dialogRequested) ConfigDialogManager.configDialogManager().releaseConfigDialog();
+                IbcStatus.getInstance().configTaskEnded();
+                IbcMetrics.getInstance().configurationDuration.observeSince(startTime);
+                ConfigurationTransaction.logActionCompleted(configAction, succeeded, (System.nanoTime() - startTime) / 1000000);
             }
         }
     }
@@ -0,0 +1,209 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+import javax.swing.JDialog;
+
+/**
+ * Applies a number of ConfigurationActions using a single opening of the
+ * Global Configuration dialog.
+ *
+ * Whereas each ConfigurationTask obtains and releases the dialog itself (and
+ * ties up a thread while waiting for it), a transaction obtains the dialog
+ * once, runs all its actions in a single task on the Swing event dispatch
+ * thread, and then releases the dialog once, so that the OK button is only
+ * clicked after all the actions have been applied.
+ *
+ * Actions that work on the same section of the dialog are run one after the
+ * other, so that each section is only selected once. Sections are dealt with
+ * in the order in which their first action was added, and actions within a
+ * section in the order in which they were added.
+ */
+class ConfigurationTransaction {
+
+    private final List<ConfigurationAction> actions = new ArrayList<>();
+
+    private boolean recorded;
+
+    private boolean stopOnFailure;
+
+    void add(ConfigurationAction action) {
+        actions.add(action);
+    }
+
+    /**
+     * Causes the transaction to be skipped if the same configuration is known
+     * to have been applied already (see ConfigurationRecord), and to be
+     * recorded once it has been applied.
+     */
+    void setRecorded() {
+        recorded = true;
+    }
+
+    /**
+     * Causes the transaction to stop running actions after the first one
+     * that fails, rather than carrying on with the others. The actions are
+     * then run in the order in which they were added, rather than grouped by
+     * section.
+     */
+    void setStopOnFailure() {
+        stopOnFailure = true;
+    }
+
+    boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    void executeAsync() {
+        if (actions.isEmpty()) return;
+        MyCachedThreadPool.getInstance().execute(this::execute);
+    }
+
+    /**
+     * Applies the actions, returning true if they were all applied (or there
+     * was no need to apply them). An action that reports that it has failed
+     * (see ConfigurationAction.hasFailed) counts as not applied, and in that
+     * case the configuration is not recorded as applied.
+     */
+    boolean execute() {
+        if (actions.isEmpty()) return true;
+
+        final String fingerprint = recorded ? getFingerprint() : null;
+        if (fingerprint != null && ConfigurationRecord.isApplied(fingerprint)) {
+            Utils.logToConsole("Configuration already applied: Global Configuration dialog not needed");
+            IbcEvents.getInstance().publish(IbcEvents.CONFIG, "Configuration already applied");
+            return true;
+        }
+
+        final long startTime = System.nanoTime();
+        boolean dialogRequested = false;
+        IbcStatus.getInstance().configTaskStarted();
+        try {
+            // getConfigDialog counts this as a user of the dialog even if it
+            // returns null, so the dialog must always be released
+            dialogRequested = true;
+            final JDialog configDialog = ConfigDialogManager.configDialogManager().getConfigDialog();    // blocks the thread until the config dialog is available
+            if (configDialog == null) {
+                Utils.logError("could not apply configuration: Global Configuration dialog not available");
+                IbcEvents.getInstance().publish(IbcEvents.CONFIG, "Configuration failed: Global Configuration dialog not available");
+                for (ConfigurationAction action : actions) IbcMetrics.getInstance().configurationFailures.increment(action.getClass().getSimpleName());
+                return false;
+            }
+            Utils.logToConsole("Got config dialog for " + actions.size() + " configuration actions in " + elapsedMillis(startTime) + " ms");
+
+            final List<ConfigurationAction> orderedActions = stopOnFailure ? new ArrayList<>(actions) : orderBySection(actions);
+            for (ConfigurationAction action : orderedActions) action.initialise(configDialog);
+
+            FutureTask<Boolean> t = new FutureTask<>(() -> {
+                boolean allSucceeded = true;
+                for (ConfigurationAction action : orderedActions) {
+                    if (stopOnFailure && !allSucceeded) break;
+                    long actionStartTime = System.nanoTime();
+                    boolean succeeded = false;
+                    try {
+                        action.run();
+                        succeeded = !action.hasFailed();
+                        IbcEvents.getInstance().publish(IbcEvents.CONFIG, action.getClass().getSimpleName() + (succeeded ? " completed" : " failed"));
+                        if (!succeeded) {
+                            IbcMetrics.getInstance().configurationFailures.increment(action.getClass().getSimpleName());
+                            allSucceeded = false;
+                        }
+                    } catch (RuntimeException e) {
+                        // unless stopOnFailure is set, don't let one failure
+                        // prevent the other actions
+                        Utils.logException(e);
+                        IbcEvents.getInstance().publish(IbcEvents.CONFIG, action.getClass().getSimpleName() + " failed: " + e);
+                        IbcMetrics.getInstance().configurationFailures.increment(action.getClass().getSimpleName());
+                        allSucceeded = false;
+                    }
+                    logActionCompleted(action, succeeded, elapsedMillis(actionStartTime));
+                }
+                return allSucceeded;
+            });
+            GuiExecutor.instance().execute(t);
+            boolean allSucceeded = t.get();
+
+            if (fingerprint != null && allSucceeded) {
+                ConfigurationRecord.setApplied(fingerprint);
+            } else if (recorded) {
+                ConfigurationRecord.clear();
+            }
+            long millis = elapsedMillis(startTime);
+            Utils.logEvent(new LogEvent(LogLevel.INFO, LogLevels.CONFIG, "configurationCompleted")
+                                .duration(millis)
+                                .message("Configuration actions completed in " + millis + " ms"));
+            return allSucceeded;
+        } catch (Exception e){
+            Utils.logException(e);
+            if (recorded) ConfigurationRecord.clear();
+            return false;
+        } finally {
+            if (dialogRequested) ConfigDialogManager.configDialogManager().releaseConfigDialog();
+            IbcStatus.getInstance().configTaskEnded();
+            IbcMetrics.getInstance().configurationDuration.observeSince(startTime);
+        }
+    }
+
+    /*
+     * Returns the combined fingerprint of all the actions, or null if any of
+     * them must always be run
+     */
+    private String getFingerprint() {
+        List<String> fingerprints = new ArrayList<>();
+        for (ConfigurationAction action : actions) {
+            String fingerprint = action.getFingerprint();
+            if (fingerprint == null) return null;
+            fingerprints.add(action.getClass().getSimpleName() + ":" + fingerprint);
+        }
+        Collections.sort(fingerprints);
+        return String.join("\n", fingerprints);
+    }
+
+    private static List<ConfigurationAction> orderBySection(List<ConfigurationAction> actions) {
+        Map<String, List<ConfigurationAction>> sections = new LinkedHashMap<>();
+        for (ConfigurationAction action : actions) {
+            String section = String.join(" > ", action.getConfigSection());
+            sections.computeIfAbsent(section, k -> new ArrayList<>()).add(action);
+        }
+
+        List<ConfigurationAction> orderedActions = new ArrayList<>();
+        for (List<ConfigurationAction> sectionActions : sections.values()) orderedActions.addAll(sectionActions);
+        return orderedActions;
+    }
+
+    static void logActionCompleted(ConfigurationAction action, boolean succeeded, long millis) {
+        String name = action.getClass().getSimpleName();
+        Utils.logEvent(new LogEvent(LogLevel.INFO, LogLevels.CONFIG, succeeded ? "configActionCompleted" : "configActionFailed")
+                            .handler(name)
+                            .duration(millis)
+                            .message(name + " took " + millis + " ms"));
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+}
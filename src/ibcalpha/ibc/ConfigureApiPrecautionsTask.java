@@ -24,6 +24,7 @@ import javax.swing.JDialog;
 public class ConfigureApiPrecautionsTask implements ConfigurationAction {
     
     private JDialog configDialog;
+    private boolean failed;
     
     private final String bypassOrderPrecautions;
     private final String bypassBondWarning;
@@ -62,9 +63,33 @@ public class ConfigureApiPrecautionsTask implements ConfigurationAction {
         this.configDialog = configDialog;
     }
 
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Precautions"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return "BypassOrderPrecautions=" + bypassOrderPrecautions +
+                ",BypassBondWarning=" + bypassBondWarning +
+                ",BypassNegativeYieldToWorstConfirmation=" + bypassNegativeYieldToWorstConfirmation +
+                ",BypassCalledBondWarning=" + bypassCalledBondWarning +
+                ",BypassSameActionPairTradeWarning=" + bypassSameActionPairTradeWarning +
+                ",BypassPriceBasedVolatilityRiskWarning=" + bypassPriceBasedVolatilityRiskWarning +
+                ",BypassUSStocksMarketDataInSharesWarning=" + bypassUSStocksMarketDataInSharesWarning +
+                ",BypassRedirectOrderWarning=" + bypassRedirectOrderWarning +
+                ",BypassNoOverfillProtectionPrecaution=" + bypassNoOverfillProtectionPrecaution;
+    }
+
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.selectConfigSection(configDialog, new String[] {"API", "Precautions"});
 
             doSetting("Bypass Order Precautions for API Orders", bypassOrderPrecautions.toLowerCase());
@@ -97,6 +122,7 @@ public class ConfigureApiPrecautionsTask implements ConfigurationAction {
         JCheckBox cb = SwingUtils.findCheckBox(configDialog, checkBoxText);
         if (cb == null) {
             Utils.logToConsole("Checkbox '" + checkBoxText + "' not found");
+            failed = true;
             return;
         }
         
@@ -31,6 +31,7 @@ class ConfigureAutoLogoffOrRestartTimeTask implements ConfigurationAction {
     private final String autoActionTime;
     private final String autoActionName;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureAutoLogoffOrRestartTimeTask(String autoActionName, String autoActionTime) {
         this.autoActionName=autoActionName;
@@ -47,9 +48,25 @@ class ConfigureAutoLogoffOrRestartTimeTask implements ConfigurationAction {
         this.configDialog = configDialog;
     }
 
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"Lock and Exit"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return autoActionName + "=" + autoActionTime;
+    }
+
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Setting " + autoActionName  + " time");
             
             DateTimeFormatter timeFormatter12HourAmPm = DateTimeFormatter.ofPattern("hh:mm a");
@@ -108,6 +125,7 @@ class ConfigureAutoLogoffOrRestartTimeTask implements ConfigurationAction {
             }
             
         } catch (IbcException e) {
+            failed = true;
             Utils.logError(e.getMessage());
         }
     }
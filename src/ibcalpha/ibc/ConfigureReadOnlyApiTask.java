@@ -25,6 +25,7 @@ public class ConfigureReadOnlyApiTask implements ConfigurationAction{
 
     private final boolean readOnlyApi;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureReadOnlyApiTask(boolean readOnlyApi) {
         this.readOnlyApi = readOnlyApi;
@@ -33,6 +34,7 @@ public class ConfigureReadOnlyApiTask implements ConfigurationAction{
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Setting ReadOnlyApi");
 
             Utils.selectApiSettings(configDialog);
@@ -56,6 +58,7 @@ public class ConfigureReadOnlyApiTask implements ConfigurationAction{
                 Utils.logToConsole("Read-Only API checkbox is now set to: " + readOnlyApi);
             }
         } catch (IbcException e) {
+            failed = true;
             Utils.logException(e);
         }
     }
@@ -64,4 +67,19 @@ public class ConfigureReadOnlyApiTask implements ConfigurationAction{
     public void initialise(JDialog configDialog) {
         this.configDialog = configDialog;
     }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return "ReadOnlyApi=" + readOnlyApi;
+    }
 }
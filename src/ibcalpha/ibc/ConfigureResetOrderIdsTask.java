@@ -24,6 +24,7 @@ public class ConfigureResetOrderIdsTask implements ConfigurationAction {
 
     private final boolean resetOrderIds;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureResetOrderIdsTask(boolean resetOrderIds) {
         this.resetOrderIds = resetOrderIds;
@@ -34,9 +35,20 @@ public class ConfigureResetOrderIdsTask implements ConfigurationAction {
         this.configDialog = configDialog;
     }
 
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
     @Override
     public void run() {
         try {
+            failed = false;
             if (!resetOrderIds) return;
             
             Utils.logToConsole("Resetting API order ids");
@@ -50,6 +62,7 @@ public class ConfigureResetOrderIdsTask implements ConfigurationAction {
 
             if (!SwingUtils.clickButton(configDialog, "Reset API order ID sequence")) throw new IbcException("could not find 'Reset API order ID sequence' button"); 
         } catch (IbcException e) {
+            failed = true;
             Utils.logException(e);
         }
     }
@@ -30,6 +30,7 @@ public class ConfigureSendMarketDataInLotsForUSstocksTask implements Configurati
 
     private final boolean sendMarketDataInLots;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureSendMarketDataInLotsForUSstocksTask(boolean sendMarketDataInLots) {
         this.sendMarketDataInLots = sendMarketDataInLots;
@@ -38,6 +39,7 @@ public class ConfigureSendMarketDataInLotsForUSstocksTask implements Configurati
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Setting Send Market Data In Lots");
 
             Utils.selectApiSettings(configDialog);
@@ -56,6 +58,7 @@ public class ConfigureSendMarketDataInLotsForUSstocksTask implements Configurati
                 Utils.logToConsole("Send Market Data In Lots checkbox is now set to: " + sendMarketDataInLots);
             }
         } catch (IbcException e) {
+            failed = true;
             Utils.logException(e);
         }
     }
@@ -64,4 +67,19 @@ public class ConfigureSendMarketDataInLotsForUSstocksTask implements Configurati
     public void initialise(JDialog configDialog) {
         this.configDialog = configDialog;
     }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return "SendMarketDataInLotsForUSstocks=" + sendMarketDataInLots;
+    }
 }
@@ -28,6 +28,7 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
 
     private final int portNumber;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureTwsApiPortTask(int portNumber) {
         this.portNumber = portNumber;
@@ -36,6 +37,7 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Performing port configuration");
 
             Utils.selectApiSettings(configDialog);
@@ -60,6 +62,7 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
                 Utils.logToConsole("TWS API socket port now set to " + tf.getText());
             }
         } catch (IbcException e) {
+            failed = true;
             Utils.logException(e);
         }
     }
@@ -68,4 +71,19 @@ class ConfigureTwsApiPortTask implements ConfigurationAction{
     public void initialise(JDialog configDialog) {
         this.configDialog = configDialog;
     }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return "OverrideTwsApiPort=" + portNumber;
+    }
 }
@@ -28,6 +28,7 @@ class ConfigureTwsMasterClientIDTask implements ConfigurationAction{
 
     private final String masterClientID;
     private JDialog configDialog;
+    private boolean failed;
 
     ConfigureTwsMasterClientIDTask(String masterClientID) {
         this.masterClientID = masterClientID;
@@ -36,6 +37,7 @@ class ConfigureTwsMasterClientIDTask implements ConfigurationAction{
     @Override
     public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Performing master client ID configuration");
 
             Utils.selectApiSettings(configDialog);
@@ -60,6 +62,7 @@ class ConfigureTwsMasterClientIDTask implements ConfigurationAction{
                 Utils.logToConsole("TWS Master Client ID now set to " + tf.getText());
             }
         } catch (IbcException e) {
+            failed = true;
             Utils.logException(e);
         }
     }
@@ -68,4 +71,19 @@ class ConfigureTwsMasterClientIDTask implements ConfigurationAction{
     public void initialise(JDialog configDialog) {
         this.configDialog = configDialog;
     }
+
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
+    @Override
+    public String getFingerprint() {
+        return "OverrideTwsMasterClientID=" + masterClientID;
+    }
 }
@@ -0,0 +1,176 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The set of client addresses permitted by the ControlFrom setting.
+ *
+ * The setting is parsed once, into:
+ *
+ *  - exact IPv4 and IPv6 addresses;
+ *
+ *  - IPv4 and IPv6 address ranges in CIDR notation (eg 192.168.1.0/24 or
+ *    fd00::/8);
+ *
+ *  - host names, which are resolved to their addresses when the list is
+ *    created and re-resolved every HOSTNAME_TTL_SECONDS on a background
+ *    thread.
+ *
+ * Checking a client address therefore never involves a DNS lookup (in
+ * particular there is no reverse lookup of the client's address), so a slow
+ * or absent DNS server cannot hold up the command server.
+ *
+ * The loopback addresses are always permitted.
+ */
+class ControlFromList {
+
+    private static final int HOSTNAME_TTL_SECONDS = 300;
+
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private final String setting;
+    private final Set<InetAddress> addresses;
+    private final byte[][] networks;
+    private final int[] prefixLengths;
+    private final List<String> hostNames;
+
+    // replaced in its entirety whenever the host names are re-resolved
+    private volatile Set<InetAddress> hostAddresses = Collections.emptySet();
+
+    private ControlFromList(String setting) {
+        this.setting = setting;
+
+        Set<InetAddress> addressSet = new HashSet<>();
+        List<byte[]> networkList = new ArrayList<>();
+        List<Integer> prefixLengthList = new ArrayList<>();
+        List<String> hostNameList = new ArrayList<>();
+
+        for (String entry : setting.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+
+            try {
+                int slash = entry.indexOf('/');
+                if (slash >= 0) {
+                    String address = entry.substring(0, slash);
+                    if (!isAddressLiteral(address)) throw new IllegalArgumentException("not an IP address");
+                    byte[] network = InetAddress.getByName(address).getAddress();
+                    int prefixLength = Integer.parseInt(entry.substring(slash + 1));
+                    if (prefixLength < 0 || prefixLength > network.length * 8) throw new IllegalArgumentException("invalid prefix length");
+                    networkList.add(network);
+                    prefixLengthList.add(prefixLength);
+                } else if (isAddressLiteral(entry)) {
+                    // no DNS lookup is done for an address literal
+                    addressSet.add(InetAddress.getByName(entry));
+                } else {
+                    hostNameList.add(entry);
+                }
+            } catch (UnknownHostException | IllegalArgumentException e) {
+                Utils.logError("ControlFrom entry '" + entry + "' is invalid and will be ignored: " + e.getMessage());
+            }
+        }
+
+        addresses = Collections.unmodifiableSet(addressSet);
+        networks = networkList.toArray(new byte[networkList.size()][]);
+        prefixLengths = new int[prefixLengthList.size()];
+        for (int i = 0; i < prefixLengths.length; i++) prefixLengths[i] = prefixLengthList.get(i);
+        hostNames = Collections.unmodifiableList(hostNameList);
+    }
+
+    /**
+     * Creates a ControlFromList from the specified setting value, and if it
+     * contains host names, resolves them and arranges for them to be
+     * re-resolved periodically.
+     */
+    static ControlFromList create(String setting) {
+        ControlFromList list = new ControlFromList(setting);
+        if (!list.hostNames.isEmpty()) {
+            list.resolveHostNames();
+            MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(
+                    list::resolveHostNames, 
+                    HOSTNAME_TTL_SECONDS, HOSTNAME_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+        return list;
+    }
+
+    boolean permits(InetAddress address) {
+        if (address.isLoopbackAddress()) return true;
+        if (addresses.contains(address)) return true;
+        if (hostAddresses.contains(address)) return true;
+        if (networks.length == 0) return false;
+
+        byte[] bytes = address.getAddress();
+        for (int i = 0; i < networks.length; i++) {
+            if (inNetwork(bytes, networks[i], prefixLengths[i])) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return setting;
+    }
+
+    private void resolveHostNames() {
+        Set<InetAddress> resolved = new HashSet<>();
+        for (String hostName : hostNames) {
+            try {
+                Collections.addAll(resolved, InetAddress.getAllByName(hostName));
+            } catch (UnknownHostException e) {
+                Utils.logToConsole("CommandServer: could not resolve ControlFrom host name: " + hostName);
+                
+                // keep any addresses previously found for this host name
+                for (InetAddress address : hostAddresses) {
+                    if (hostName.equalsIgnoreCase(address.getHostName())) resolved.add(address);
+                }
+            }
+        }
+        hostAddresses = Collections.unmodifiableSet(resolved);
+    }
+
+    private static boolean isAddressLiteral(String s) {
+        return IPV4_LITERAL.matcher(s).matches() || s.indexOf(':') >= 0;
+    }
+
+    private static boolean inNetwork(byte[] address, byte[] network, int prefixLength) {
+        if (address.length != network.length) return false;
+
+        int wholeBytes = prefixLength / 8;
+        for (int i = 0; i < wholeBytes; i++) {
+            if (address[i] != network[i]) return false;
+        }
+
+        int remainingBits = prefixLength % 8;
+        if (remainingBits == 0) return true;
+        int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+        return (address[wholeBytes] & mask) == (network[wholeBytes] & mask);
+    }
+
+}
@@ -34,6 +34,11 @@ public class CryptoOrderConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         String setting = Settings.settings().getString("ConfirmCryptoCurrencyOrders", "manual");
@@ -64,5 +69,10 @@ public class CryptoOrderConfirmationDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Cryptocurrency order confirmation"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Cryptocurrency order confirmation");
+    }
     
 }
@@ -20,8 +20,6 @@ package ibcalpha.ibc;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -52,6 +50,9 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
     @Override
     public void clearConfigDialog() {
         openedByUser = false;
+        synchronized (this) {
+            commitRequired = false;
+        }
         configDialog = null;
     }
 
@@ -85,24 +86,22 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
 
         if (SwingUtilities.isEventDispatchThread()) throw new IllegalStateException();
 
-        Utils.logToConsole("Getting config dialog");
+        Utils.logDebug(LogLevels.CONFIG_DIALOG, () -> "Getting config dialog");
 
         incrementUsage();
 
         if (configDialog != null) {
-            Utils.logToConsole("Config dialog already found");
+            Utils.logDebug(LogLevels.CONFIG_DIALOG, () -> "Config dialog already found");
             return configDialog;
         }
 
         synchronized(futureCreationLock) {
             if (configDialogFuture != null) {
-                    Utils.logToConsole("Waiting for config dialog future to complete");
+                    Utils.logDebug(LogLevels.CONFIG_DIALOG, () -> "Waiting for config dialog future to complete");
             } else {
-                Utils.logToConsole("Creating config dialog future");
+                Utils.logDebug(LogLevels.CONFIG_DIALOG, () -> "Creating config dialog future");
                 configDialogTask = new GetConfigDialogTask();
-                ExecutorService exec = Executors.newSingleThreadExecutor();
-                configDialogFuture = exec.submit((Callable<JDialog>)configDialogTask);
-                exec.shutdown();
+                configDialogFuture = MyCachedThreadPool.getInstance().submit((Callable<JDialog>)configDialogTask);
             }
         }
 
@@ -112,7 +111,7 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
             } else {
                 configDialog = configDialogFuture.get(timeout, unit);
             }
-            Utils.logToConsole("Got config dialog from future");
+            Utils.logDebug(LogLevels.CONFIG_DIALOG, () -> "Got config dialog from future");
             return configDialog;
         } catch (TimeoutException | InterruptedException e) {
             return null;
@@ -155,6 +154,10 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
         if (configDialogTask == null) {
             // config dialog opened by user
             openedByUser = true;
+
+            // the user may change settings that IBC has applied, so make
+            // sure they are applied in full next time
+            MyCachedThreadPool.getInstance().execute(() -> ConfigurationRecord.clear());
         } else {
             configDialogTask.setConfigDialog(window);
             configDialogTask = null;
@@ -183,17 +186,28 @@ public class DefaultConfigDialogManager extends ConfigDialogManager {
         apiConfigChangeConfirmationExpected = false;
     }
 
+    private boolean commitRequired;
+    @Override
+    public synchronized void setCommitRequired() {
+        commitRequired = true;
+    }
+
     private synchronized void incrementUsage() {
         usageCount++;
     }
 
     private synchronized void decrementUsage() {
         usageCount--;
-        if (openedByUser) return;
+
+        // if the user opened the dialog, it's left for them to close unless
+        // there are changes that must be committed
+        if (openedByUser && !commitRequired) return;
         if (usageCount == 0){
+            commitRequired = false;
             GuiDeferredExecutor.instance().execute(() -> {
                 Utils.logToConsole("Configuration tasks completed");
-                SwingUtils.clickButton(configDialog, "OK");
+                // the dialog may never have been obtained
+                if (configDialog != null) SwingUtils.clickButton(configDialog, "OK");
                 GuiDeferredExecutor.instance().execute(() -> MainWindowManager.mainWindowManager().iconizeIfRequired());
             });
         }
@@ -24,8 +24,6 @@ import java.awt.event.WindowStateListener;
 import java.util.Calendar;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -71,22 +69,20 @@ public class DefaultMainWindowManager extends MainWindowManager {
     public JFrame getMainWindow(long timeout, TimeUnit unit) {
         if (SwingUtilities.isEventDispatchThread()) throw new IllegalStateException();
 
-        Utils.logToConsole("Getting main window");
+        Utils.logDebug(LogLevels.MAIN_WINDOW, () -> "Getting main window");
 
         if (mainWindow != null) {
-            Utils.logToConsole("Main window already found");
+            Utils.logDebug(LogLevels.MAIN_WINDOW, () -> "Main window already found");
             return mainWindow;
         }
 
         synchronized(futureCreationLock) {
             if (mainWindowFuture != null) {
-                    Utils.logToConsole("Waiting for main window future to complete");
+                    Utils.logDebug(LogLevels.MAIN_WINDOW, () -> "Waiting for main window future to complete");
             } else {
-                Utils.logToConsole("Creating main window future");
+                Utils.logDebug(LogLevels.MAIN_WINDOW, () -> "Creating main window future");
                 mainWindowTask = new GetMainWindowTask();
-                ExecutorService exec = Executors.newSingleThreadExecutor();
-                mainWindowFuture = exec.submit((Callable<JFrame>) mainWindowTask);
-                exec.shutdown();
+                mainWindowFuture = MyCachedThreadPool.getInstance().submit((Callable<JFrame>) mainWindowTask);
             }
         }
 
@@ -96,7 +92,7 @@ public class DefaultMainWindowManager extends MainWindowManager {
             } else {
                 mainWindow = mainWindowFuture.get(timeout, unit);
             }
-            Utils.logToConsole("Got main window from future");
+            Utils.logDebug(LogLevels.MAIN_WINDOW, () -> "Got main window from future");
             return mainWindow;
         } catch (TimeoutException | InterruptedException e) {
             return null;
@@ -132,6 +128,7 @@ public class DefaultMainWindowManager extends MainWindowManager {
     public void setMainWindow(JFrame window) {
         Utils.logToConsole("Found " + (SessionManager.isGateway() ? "Gateway" : "TWS") + " main window");
         mainWindow = window;
+        IbcStatus.getInstance().setMainWindowPresent();
 
         // For TWS, the main window being opened indicates that login is complete. This is not the case
         // for the Gateway, because the main window is created right at the start, but the splash frame
@@ -175,7 +175,7 @@ public class DefaultSettings extends Settings {
         try {
             return Integer.parseInt(value);
         } catch (NumberFormatException e) {
-            Utils.logToConsole(
+            Utils.logToConsoleLimited(
                     "Invalid number \""
                     + value
                     + "\" for property \""
@@ -202,7 +202,7 @@ public class DefaultSettings extends Settings {
         }
 
         if (value.length() != 1) {
-            Utils.logToConsole(
+            Utils.logToConsoleLimited(
                     "Invalid character \""
                     + value
                     + "\" for property \""
@@ -234,7 +234,7 @@ public class DefaultSettings extends Settings {
         try {
             return Double.parseDouble(value);
         } catch (NumberFormatException e) {
-            Utils.logToConsole(
+            Utils.logToConsoleLimited(
                     "Invalid number \""
                     + value
                     + "\" for property \""
@@ -26,6 +26,7 @@ class EnableApiTask implements ConfigurationAction{
     private final CommandChannel mChannel;
 
     private JDialog configDialog;
+    private boolean failed;
 
     EnableApiTask(final CommandChannel channel) {
         mChannel = channel;
@@ -33,8 +34,10 @@ class EnableApiTask implements ConfigurationAction{
 
     @Override public void run() {
         try {
+            failed = false;
             Utils.logToConsole("Doing ENABLEAPI configuration");
 
+            if (configDialog == null) throw new IbcException("Global Configuration dialog not available");
             Utils.selectApiSettings(configDialog);
 
             JCheckBox cb = SwingUtils.findCheckBox(configDialog, "Enable ActiveX and Socket Clients");
@@ -42,7 +45,10 @@ class EnableApiTask implements ConfigurationAction{
 
             if (!cb.isSelected()) {
                 cb.doClick();
-                SwingUtils.clickButton(configDialog, "OK");
+
+                // the change must be committed by clicking the dialog's OK
+                // button when it is released, even if the user opened it
+                ConfigDialogManager.configDialogManager().setCommitRequired();
                 Utils.logToConsole("TWS has been configured to accept API connections");
                 mChannel.writeAck("configured");
             } else {
@@ -50,6 +56,7 @@ class EnableApiTask implements ConfigurationAction{
                 mChannel.writeAck("already configured");
             }
         } catch (IbcException e) {
+            failed = true;
             Utils.logError("CommandServer: " + e.getMessage());
             mChannel.writeNack(e.getMessage());
         }
@@ -60,4 +67,14 @@ class EnableApiTask implements ConfigurationAction{
         this.configDialog = configDialog;
     }
 
+    @Override
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public String[] getConfigSection() {
+        return new String[] {"API", "Settings"};
+    }
+
 }
@@ -35,6 +35,10 @@ public class ExistingSessionDetectedDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         final String MANUAL = "manual";
         final String PRIMARY = "primary";
@@ -148,4 +152,9 @@ public class ExistingSessionDetectedDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Existing session detected"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Existing session detected");
+    }
 }
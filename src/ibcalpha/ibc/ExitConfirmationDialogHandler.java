@@ -32,6 +32,10 @@ public class ExitConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         // we don't handle this dialog if it's not the result of 
         // a StopTask running
@@ -48,4 +52,9 @@ public class ExitConfirmationDialogHandler implements WindowHandler {
         return (SwingUtils.findLabel(window, "Are you sure you want to exit?") != null);
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("Are you sure you want to exit?");
+    }
+
 }
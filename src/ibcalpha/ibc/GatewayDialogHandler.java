@@ -34,6 +34,11 @@ public class GatewayDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         String text = SwingUtils.getLabelTexts(window);
@@ -59,5 +64,10 @@ public class GatewayDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Gateway"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Gateway");
+    }
     
 }
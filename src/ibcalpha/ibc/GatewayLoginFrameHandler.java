@@ -37,6 +37,11 @@ final class GatewayLoginFrameHandler extends AbstractLoginHandler {
                 SwingUtils.findButton(window, "Paper Log In") != null));    // TWS 974+
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitleContaining("IBKR Gateway", "IB Gateway", "Interactive Brokers Gateway");
+    }
+
     @Override
     protected final boolean initialise(final Window window, int eventID) throws IbcException {
         selectGatewayMode(window);
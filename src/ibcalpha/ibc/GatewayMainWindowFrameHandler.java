@@ -33,6 +33,11 @@ class GatewayMainWindowFrameHandler  implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         SessionManager.setMainWindow((JFrame) window);
@@ -46,4 +51,9 @@ class GatewayMainWindowFrameHandler  implements WindowHandler {
                 (SwingUtils.findMenuItemInAnyMenuBar(window, new String [] {"Help", "About IB Gateway"}) != null);
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames();
+    }
+
 }
@@ -35,6 +35,11 @@ class GlobalConfigurationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSED};
+    }
+
     @Override
     public void handleWindow(final Window window, int eventId) {
         switch (eventId) {
@@ -52,4 +57,9 @@ class GlobalConfigurationDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Configuration"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Configuration");
+    }
 }
@@ -0,0 +1,144 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An optional HTTP server for health checks by container orchestrators, load
+ * balancers, monitoring systems and so on.
+ *
+ * It serves:
+ *
+ *  - /live: always 200 while IBC is running;
+ *
+ *  - /ready: 200 if TWS/Gateway is logged in, its main window has been found
+ *    and the startup configuration has been applied, otherwise 503;
+ *
+ *  - /state: the STATUS command's information, as JSON.
+ *
+ *  - /metrics: IbcMetrics, in the Prometheus text exposition format.
+ *
+ * The responses are produced entirely from IbcStatus's snapshot on the
+ * server's own thread, so a busy event dispatch thread can never cause a
+ * health check to fail or time out.
+ *
+ * The server is only started if the HealthCheckPort setting is non-zero. It
+ * listens on the address given by the BindAddress setting (if any), and only
+ * accepts requests from the addresses permitted by the ControlFrom setting,
+ * in the same way as the command server.
+ */
+class HealthServer {
+
+    private static HttpServer _server;
+    private static ExecutorService _executor;
+    private static ControlFromList _controlFrom;
+
+    static synchronized void start() {
+        final int port = Settings.settings().getInt("HealthCheckPort", 0);
+        if (port == 0) {
+            Utils.logToConsole("HealthServer is not started because the port is not configured");
+            return;
+        }
+
+        _controlFrom = ControlFromList.create(Settings.settings().getString("ControlFrom", ""));
+
+        try {
+            final String bindaddr = Settings.settings().getString("BindAddress", "");
+            InetSocketAddress address = bindaddr.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getByName(bindaddr), port);
+            _server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            Utils.logError("HealthServer failed to create socket on port " + port + ": " + e.getMessage());
+            return;
+        }
+
+        _server.createContext("/live", (exchange) -> respond(exchange, 200, "text/plain", "live"));
+        _server.createContext("/ready", (exchange) -> {
+            String reason = IbcStatus.getInstance().getSnapshot().getNotReadyReason();
+            if (reason == null) {
+                respond(exchange, 200, "text/plain", "ready");
+            } else {
+                respond(exchange, 503, "text/plain", "not ready: " + reason);
+            }
+        });
+        _server.createContext("/state", (exchange) -> respond(exchange, 200, "application/json", IbcStatus.getInstance().getSnapshot().toJson()));
+        _server.createContext("/metrics", (exchange) -> respond(exchange, 200, "text/plain; version=0.0.4", IbcMetrics.getInstance().toPrometheusText()));
+
+        _executor = Executors.newSingleThreadExecutor((r) -> {
+            Thread t = new Thread(r, "HealthServer");
+            t.setDaemon(true);
+            return t;
+        });
+        _server.setExecutor(_executor);
+        _server.start();
+        Utils.logToConsole("HealthServer listening on " + _server.getAddress());
+    }
+
+    static synchronized void stop() {
+        if (_server == null) return;
+        Utils.logToConsole("HealthServer closing");
+        _server.stop(0);
+        _executor.shutdownNow();
+        _server = null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try {
+            InetAddress client = exchange.getRemoteAddress().getAddress();
+            if (!client.equals(exchange.getLocalAddress().getAddress()) && !_controlFrom.permits(client)) {
+                Utils.logToConsole("HealthServer denied access to: " + client);
+                status = 403;
+                body = "forbidden";
+                contentType = "text/plain";
+            } else if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                status = 405;
+                body = "method not allowed";
+                contentType = "text/plain";
+            } else if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                status = 404;
+                body = "not found";
+                contentType = "text/plain";
+            }
+
+            byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(bytes);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Distributes notifications of significant events to command server clients
+ * that have issued the SUBSCRIBE command.
+ *
+ * Each event belongs to one of the topics listed in TOPICS, and is sent to
+ * each subscriber to that topic as a line of the form:
+ *
+ *     EVENT topic details
+ *
+ * Events are written without blocking the thread that publishes them (which
+ * is often the event dispatch thread). If a subscriber doesn't read its
+ * events quickly enough, the number of lines waiting to be sent to it is
+ * limited by the CommandServerEventQueueSize setting: once the limit is
+ * reached, further events are either discarded (and the client is told how
+ * many were lost when there is room again), or the connection is closed,
+ * depending on the CommandServerSlowSubscriberAction setting.
+ */
+class IbcEvents {
+
+    static final String LOGIN = "login";
+    static final String WINDOW = "window";
+    static final String CONFIG = "config";
+    static final String SHUTDOWN = "shutdown";
+
+    static final List<String> TOPICS = Collections.unmodifiableList(Arrays.asList(LOGIN, WINDOW, CONFIG, SHUTDOWN));
+
+    private static final IbcEvents _instance = new IbcEvents();
+
+    static IbcEvents getInstance() {
+        return _instance;
+    }
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final int maxQueued;
+    private final boolean disconnectSlowSubscribers;
+
+    private IbcEvents() {
+        maxQueued = Math.max(1, Settings.settings().getInt("CommandServerEventQueueSize", 1000));
+
+        String action = Settings.settings().getString("CommandServerSlowSubscriberAction", "drop");
+        switch (action.toLowerCase()) {
+            case "drop":
+                disconnectSlowSubscribers = false;
+                break;
+            case "disconnect":
+                disconnectSlowSubscribers = true;
+                break;
+            default:
+                Utils.logError("the CommandServerSlowSubscriberAction setting '" + action + "' is invalid: 'drop' will be used");
+                disconnectSlowSubscribers = false;
+        }
+    }
+
+    /**
+     * Sends the specified event to all the clients that have subscribed to
+     * its topic.
+     */
+    void publish(String topic, String details) {
+        if (subscribers.isEmpty()) return;
+
+        String line = "EVENT " + topic + " " + details;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.topics.contains(topic)) subscriber.deliver(line);
+        }
+    }
+
+    /**
+     * Subscribes the specified connection to the specified topics, replacing
+     * any earlier subscription for that connection.
+     */
+    void subscribe(CommandConnection connection, Set<String> topics) {
+        unsubscribe(connection);
+        subscribers.add(new Subscriber(connection, new LinkedHashSet<>(topics)));
+        Utils.logToConsole("CommandServer: " + connection.getRemoteAddress() + " subscribed to " + topics);
+    }
+
+    /**
+     * Removes any subscription for the specified connection.
+     */
+    void unsubscribe(CommandConnection connection) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.connection == connection) subscribers.remove(subscriber);
+        }
+    }
+
+    boolean isSubscribed(CommandConnection connection) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.connection == connection) return true;
+        }
+        return false;
+    }
+
+    private final class Subscriber {
+        final CommandConnection connection;
+        final Set<String> topics;
+        private int dropped;
+
+        Subscriber(CommandConnection connection, Set<String> topics) {
+            this.connection = connection;
+            this.topics = topics;
+        }
+
+        synchronized void deliver(String line) {
+            if (dropped > 0) {
+                if (!connection.writeEvent("EVENT overflow " + dropped + " events discarded", maxQueued)) {
+                    overflow();
+                    return;
+                }
+                dropped = 0;
+            }
+            if (!connection.writeEvent(line, maxQueued)) overflow();
+        }
+
+        private void overflow() {
+            if (disconnectSlowSubscribers) {
+                Utils.logError("CommandServer: closing connection from " + connection.getRemoteAddress() + ": too many undelivered events");
+                unsubscribe(connection);
+                connection.abort();
+            } else {
+                if (dropped == 0) Utils.logToConsole("CommandServer: discarding events for " + connection.getRemoteAddress() + ": too many undelivered events");
+                dropped++;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A registry of metrics about IBC's activities and the JVM it runs in (which
+ * is also TWS/Gateway's JVM), which can be written in the Prometheus text
+ * exposition format.
+ *
+ * Counters and histograms are updated with LongAdders, so recording a value
+ * never blocks and costs very little even when done on the event dispatch
+ * thread. Gauges are evaluated only when the metrics are written.
+ */
+class IbcMetrics {
+
+    /**
+     * Bucket upper bounds (in seconds) for short operations such as commands.
+     */
+    static final double[] SHORT_BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30};
+
+    /**
+     * Bucket upper bounds (in seconds) for long operations such as login.
+     */
+    static final double[] LONG_BUCKETS = {1, 2, 5, 10, 20, 30, 60, 120, 180, 300, 600};
+
+    // must follow the bucket definitions, which are needed by the constructor
+    private static final IbcMetrics _instance = new IbcMetrics();
+
+    static IbcMetrics getInstance() {
+        return _instance;
+    }
+
+    // in registration order, which is the order they are written in; this
+    // must precede the metric fields, which register themselves
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    // window events
+    final LabelledCounter windowEvents = labelledCounter("ibc_window_events_total", "Window events handled, by event type", "event");
+    final LabelledCounter windowRecognitions = labelledCounter("ibc_window_recognitions_total", "Windows recognised, by handler ('unknown' if no handler recognised the window)", "handler");
+
+    // login
+    final Counter loginAttempts = counter("ibc_login_attempts_total", "Login attempts made by IBC");
+    final Counter loginFailures = counter("ibc_login_failures_total", "Login attempts that failed");
+    final Histogram loginDuration = histogram("ibc_login_duration_seconds", "Time from clicking the login button to login completion", LONG_BUCKETS);
+    final Histogram secondFactorDuration = histogram("ibc_second_factor_duration_seconds", "Time from the start of second factor authentication to login completion", LONG_BUCKETS);
+
+    // command server
+    final Counter commandConnections = counter("ibc_command_connections_total", "Command server connections accepted");
+    final Counter commandConnectionsRefused = counter("ibc_command_connections_refused_total", "Command server connections refused, either because the client is not permitted or because there are too many connections");
+    final LabelledCounter commands = labelledCounter("ibc_commands_total", "Commands received, by command ('invalid' for unrecognised commands)", "command");
+    final Histogram commandDuration = histogram("ibc_command_duration_seconds", "Time taken to carry out commands", SHORT_BUCKETS);
+
+    // configuration
+    final Histogram configurationDuration = histogram("ibc_configuration_duration_seconds", "Time taken to apply configuration changes, including waiting for the Global Configuration dialog", LONG_BUCKETS);
+    final LabelledCounter configurationFailures = labelledCounter("ibc_configuration_failures_total", "Configuration actions that failed, by action", "action");
+
+    private IbcMetrics() {
+        registerJvmMetrics();
+    }
+
+    private Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    private LabelledCounter labelledCounter(String name, String help, String labelName) {
+        return register(new LabelledCounter(name, help, labelName));
+    }
+
+    private Histogram histogram(String name, String help, double[] bounds) {
+        return register(new Histogram(name, help, bounds));
+    }
+
+    /**
+     * Registers a gauge whose value is obtained from the specified supplier
+     * each time the metrics are written.
+     */
+    void gauge(String name, String help, DoubleSupplier value) {
+        register(new Gauge(name, help, "gauge", value));
+    }
+
+    private <T extends Metric> T register(T metric) {
+        metrics.add(metric);
+        return metric;
+    }
+
+    private void registerJvmMetrics() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm_memory_heap_used_bytes", "Heap memory in use", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm_memory_heap_committed_bytes", "Heap memory committed", () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("jvm_memory_heap_max_bytes", "Maximum heap memory", () -> memory.getHeapMemoryUsage().getMax());
+        gauge("jvm_memory_nonheap_used_bytes", "Non-heap memory in use", () -> memory.getNonHeapMemoryUsage().getUsed());
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        gauge("jvm_threads_current", "Current number of live threads", threads::getThreadCount);
+        gauge("jvm_threads_daemon", "Current number of live daemon threads", threads::getDaemonThreadCount);
+        gauge("jvm_threads_peak", "Peak number of live threads", threads::getPeakThreadCount);
+
+        Map<String, DoubleSupplier> collections = new TreeMap<>();
+        Map<String, DoubleSupplier> collectionTimes = new TreeMap<>();
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections.put(gc.getName(), gc::getCollectionCount);
+            collectionTimes.put(gc.getName(), () -> gc.getCollectionTime() / 1000.0);
+        }
+        register(new LabelledGauge("jvm_gc_collections_total", "Number of garbage collections, by collector", "counter", "gc", collections));
+        register(new LabelledGauge("jvm_gc_collection_seconds_total", "Time spent in garbage collections, by collector", "counter", "gc", collectionTimes));
+
+        gauge("process_uptime_seconds", "Time since the JVM started", () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    /**
+     * Returns all the metrics in the Prometheus text exposition format.
+     */
+    String toPrometheusText() {
+        StringBuilder sb = new StringBuilder(8192);
+        for (Metric metric : metrics) {
+            sb.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            sb.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            metric.write(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of seconds since the specified System.nanoTime()
+     * value.
+     */
+    static double secondsSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static void appendValue(StringBuilder sb, double value) {
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String type;
+
+        Metric(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        abstract void write(StringBuilder sb);
+    }
+
+    static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name, String help) {
+            super(name, help, "counter");
+        }
+
+        void increment() {
+            count.increment();
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            sb.append(name).append(' ').append(count.sum()).append('\n');
+        }
+    }
+
+    /**
+     * A counter with a single label. The label's values must come from a
+     * small fixed set (eg class names), never from user input.
+     */
+    static final class LabelledCounter extends Metric {
+        private final String labelName;
+        private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+        private LabelledCounter(String name, String help, String labelName) {
+            super(name, help, "counter");
+            this.labelName = labelName;
+        }
+
+        void increment(String labelValue) {
+            counts.computeIfAbsent(labelValue, (k) -> new LongAdder()).increment();
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counts).entrySet()) {
+                sb.append(name).append('{').append(labelName).append("=\"").append(escapeLabelValue(entry.getKey())).append("\"} ")
+                  .append(entry.getValue().sum()).append('\n');
+            }
+        }
+    }
+
+    static final class Histogram extends Metric {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Histogram(String name, String help, double[] bounds) {
+            super(name, help, "histogram");
+            this.bounds = bounds;
+            buckets = new LongAdder[bounds.length];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void observe(double seconds) {
+            for (int i = 0; i < bounds.length; i++) {
+                if (seconds <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(seconds);
+        }
+
+        /**
+         * Records the time since the specified System.nanoTime() value.
+         */
+        void observeSince(long startNanos) {
+            observe(secondsSince(startNanos));
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            // buckets are cumulative in the exposition format
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                sb.append(name).append("_bucket{le=\"");
+                appendValue(sb, bounds[i]);
+                sb.append("\"} ").append(cumulative).append('\n');
+            }
+            long total = count.sum();
+            sb.append(name).append("_bucket{le=\"+Inf\"} ").append(Math.max(total, cumulative)).append('\n');
+            sb.append(name).append("_sum ").append(sum.sum()).append('\n');
+            sb.append(name).append("_count ").append(total).append('\n');
+        }
+    }
+
+    private static final class Gauge extends Metric {
+        private final DoubleSupplier value;
+
+        Gauge(String name, String help, String type, DoubleSupplier value) {
+            super(name, help, type);
+            this.value = value;
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            sb.append(name).append(' ');
+            appendValue(sb, value.getAsDouble());
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * A set of gauges (or externally maintained counters) distinguished by a
+     * single label, whose values are all known when it is created.
+     */
+    private static final class LabelledGauge extends Metric {
+        private final String labelName;
+        private final Map<String, DoubleSupplier> values;
+
+        LabelledGauge(String name, String help, String type, String labelName, Map<String, DoubleSupplier> values) {
+            super(name, help, type);
+            this.labelName = labelName;
+            this.values = values;
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<String, DoubleSupplier> entry : values.entrySet()) {
+                sb.append(name).append('{').append(labelName).append("=\"").append(escapeLabelValue(entry.getKey())).append("\"} ");
+                appendValue(sb, entry.getValue().getAsDouble());
+                sb.append('\n');
+            }
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Keeps an up-to-date summary of IBC's state, for the command server's
+ * STATUS command.
+ *
+ * The components that change the state report each change here, and an
+ * immutable Snapshot is rebuilt each time. Reading the status is therefore
+ * just a matter of reading the current snapshot: it never involves the Swing
+ * event dispatch thread or any Swing component, so the status can be polled
+ * as often as required without affecting TWS.
+ */
+class IbcStatus {
+
+    private static final IbcStatus _instance = new IbcStatus();
+
+    static IbcStatus getInstance() {
+        return _instance;
+    }
+
+    private LoginManager.LoginState loginState = LoginManager.LoginState.LOGGED_OUT;
+    private boolean mainWindowPresent;
+    private boolean sessionStarted;
+    private boolean fix;
+    private String tradingMode = "";
+    private Date scheduledShutdownTime;
+    private boolean scheduledColdRestart;
+    private int pendingConfigTasks;
+    private boolean startupConfigurationApplied;
+    private boolean startupConfigurationFailed;
+    private String lastError;
+    private Date lastErrorTime;
+
+    private volatile Snapshot snapshot = new Snapshot(this);
+
+    private IbcStatus() {}
+
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    synchronized void setLoginState(LoginManager.LoginState state) {
+        loginState = state;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setMainWindowPresent() {
+        mainWindowPresent = true;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setSessionStarted(boolean isFIX, String tradingMode) {
+        sessionStarted = true;
+        fix = isFIX;
+        this.tradingMode = tradingMode;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setScheduledShutdown(Date time, boolean isColdRestart) {
+        scheduledShutdownTime = time;
+        scheduledColdRestart = isColdRestart;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void configTaskStarted() {
+        pendingConfigTasks++;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void configTaskEnded() {
+        pendingConfigTasks--;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setStartupConfigurationApplied() {
+        startupConfigurationApplied = true;
+        startupConfigurationFailed = false;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setStartupConfigurationFailed() {
+        startupConfigurationApplied = false;
+        startupConfigurationFailed = true;
+        snapshot = new Snapshot(this);
+    }
+
+    synchronized void setLastError(String message) {
+        lastError = message;
+        lastErrorTime = new Date();
+        snapshot = new Snapshot(this);
+    }
+
+    /**
+     * An immutable copy of IBC's state at a particular moment. The text and
+     * JSON forms (apart from the uptime, which is added when requested) are
+     * only built once.
+     */
+    static final class Snapshot {
+        final LoginManager.LoginState loginState;
+        final boolean mainWindowPresent;
+        final String application;
+        final boolean sessionStarted;
+        final boolean fix;
+        final String tradingMode;
+        final Date scheduledShutdownTime;
+        final boolean scheduledColdRestart;
+        final int pendingConfigTasks;
+        final boolean startupConfigurationApplied;
+        final boolean startupConfigurationFailed;
+        final String lastError;
+        final Date lastErrorTime;
+
+        private String text;
+        private String json;
+
+        private Snapshot(IbcStatus status) {
+            loginState = status.loginState;
+            mainWindowPresent = status.mainWindowPresent;
+            application = SessionManager.isGateway() ? "Gateway" : "TWS";
+            sessionStarted = status.sessionStarted;
+            fix = status.fix;
+            tradingMode = status.tradingMode;
+            scheduledShutdownTime = status.scheduledShutdownTime;
+            scheduledColdRestart = status.scheduledColdRestart;
+            pendingConfigTasks = status.pendingConfigTasks;
+            startupConfigurationApplied = status.startupConfigurationApplied;
+            startupConfigurationFailed = status.startupConfigurationFailed;
+            lastError = status.lastError;
+            lastErrorTime = status.lastErrorTime;
+        }
+
+        /**
+         * Returns null if TWS/Gateway is ready for use, ie it is logged in,
+         * the main window has been found and the startup configuration (in
+         * particular the API settings) has been applied; otherwise returns
+         * the reason it is not ready.
+         */
+        String getNotReadyReason() {
+            if (loginState != LoginManager.LoginState.LOGGED_IN) return "login state is " + loginState;
+            if (!mainWindowPresent) return "main window not found";
+            if (startupConfigurationFailed) return "startup configuration failed";
+            if (!startupConfigurationApplied) return "startup configuration not applied";
+            return null;
+        }
+
+        /**
+         * Returns the number of seconds since IBC started.
+         */
+        long getUptimeSeconds() {
+            return ManagementFactory.getRuntimeMXBean().getUptime() / 1000;
+        }
+
+        /**
+         * Returns the status as a single line of space separated name=value
+         * pairs.
+         */
+        String toText() {
+            if (text == null) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("LoginState=").append(loginState);
+                sb.append(" MainWindow=").append(mainWindowPresent ? "yes" : "no");
+                sb.append(" Application=").append(application);
+                sb.append(" FIX=").append(sessionStarted ? (fix ? "yes" : "no") : "unknown");
+                sb.append(" TradingMode=").append(tradingMode.isEmpty() ? "unknown" : tradingMode);
+                sb.append(" ScheduledShutdown=").append(formatDate(scheduledShutdownTime));
+                sb.append(" ScheduledShutdownType=").append(scheduledShutdownTime == null ? "none" : (scheduledColdRestart ? "coldrestart" : "shutdown"));
+                sb.append(" PendingConfigTasks=").append(pendingConfigTasks);
+                sb.append(" StartupConfiguration=").append(startupConfigurationApplied ? "applied" : (startupConfigurationFailed ? "failed" : "pending"));
+                sb.append(" LastErrorTime=").append(formatDate(lastErrorTime));
+                sb.append(" LastError=\"").append(lastError == null ? "" : lastError.replace('"', '\'').replace('\r', ' ').replace('\n', ' ')).append('"');
+                text = sb.toString();
+            }
+            return "Uptime=" + getUptimeSeconds() + " " + text;
+        }
+
+        /**
+         * Returns the status as a single-line JSON object.
+         */
+        String toJson() {
+            if (json == null) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("\"loginState\":\"").append(loginState).append('"');
+                sb.append(",\"mainWindow\":").append(mainWindowPresent);
+                sb.append(",\"application\":\"").append(application).append('"');
+                sb.append(",\"fix\":").append(sessionStarted ? String.valueOf(fix) : "null");
+                sb.append(",\"tradingMode\":").append(jsonString(tradingMode.isEmpty() ? null : tradingMode));
+                sb.append(",\"scheduledShutdown\":").append(jsonString(scheduledShutdownTime == null ? null : formatDate(scheduledShutdownTime)));
+                sb.append(",\"scheduledShutdownType\":").append(jsonString(scheduledShutdownTime == null ? null : (scheduledColdRestart ? "coldrestart" : "shutdown")));
+                sb.append(",\"pendingConfigTasks\":").append(pendingConfigTasks);
+                sb.append(",\"startupConfigurationApplied\":").append(startupConfigurationApplied);
+                sb.append(",\"startupConfigurationFailed\":").append(startupConfigurationFailed);
+                sb.append(",\"lastErrorTime\":").append(jsonString(lastErrorTime == null ? null : formatDate(lastErrorTime)));
+                sb.append(",\"lastError\":").append(jsonString(lastError));
+                json = sb.toString();
+            }
+            return "{\"uptime\":" + getUptimeSeconds() + "," + json + "}";
+        }
+
+        private static String formatDate(Date date) {
+            if (date == null) return "none";
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").format(date);
+        }
+    }
+
+    /**
+     * Returns the specified value as a JSON string literal, or null.
+     */
+    static String jsonString(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+}
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
@@ -264,6 +265,10 @@ public class IbcTws {
 
     public static void load() {
         try {
+            setLogFormat();
+
+            startLogFileIfRequired();
+
             printVersionInfo();
 
             printProperties();
@@ -276,6 +281,8 @@ public class IbcTws {
 
             startCommandServer();
 
+            HealthServer.start();
+
             startShutdownTimerIfRequired();
 
             createToolkitListener();
@@ -293,6 +300,41 @@ public class IbcTws {
         }
     }
 
+    private static void setLogFormat() {
+        String logFormat = Settings.settings().getString("LogFormat", "text");
+        if (logFormat.equalsIgnoreCase("json")) {
+            AsyncLogger.getInstance().setJsonFormat(true);
+        } else if (!logFormat.equalsIgnoreCase("text")) {
+            Utils.logError("Invalid setting LogFormat=" + logFormat + ": text is assumed");
+        }
+    }
+
+    private static void startLogFileIfRequired() {
+        String logFile = Settings.settings().getString("LogFile", "");
+        if (logFile.isEmpty()) return;
+
+        long maxBytes = Settings.settings().getInt("LogFileMaxSize", 100) * 1024L * 1024L;
+        int retention = Settings.settings().getInt("LogFileRetention", 14);
+        boolean compress = Settings.settings().getBoolean("LogFileCompress", true);
+
+        String rotationSetting = Settings.settings().getString("LogFileRotation", "daily");
+        RotatingLogFile.Rotation rotation;
+        try {
+            rotation = RotatingLogFile.Rotation.valueOf(rotationSetting.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Utils.logError("Invalid setting LogFileRotation=" + rotationSetting + ": daily is assumed");
+            rotation = RotatingLogFile.Rotation.DAILY;
+        }
+
+        try {
+            RotatingLogFile file = new RotatingLogFile(Paths.get(logFile), maxBytes, rotation, compress, retention);
+            Utils.logToConsole("IBC is logging to " + file.getPath());
+            AsyncLogger.getInstance().setLogFile(file);
+        } catch (IOException | InvalidPathException e) {
+            Utils.logError("Could not open log file " + logFile + " (" + e + "): logging to the console instead");
+        }
+    }
+
     public static void printVersionInfo() {
         Utils.logToConsole("version: " + IbcVersionInfo.IBC_VERSION);
     }
@@ -474,7 +516,7 @@ public class IbcTws {
             ibgateway.GWClient.main(twsArgs);
         } catch (Throwable t) {
             Utils.logError("Exception occurred at Gateway entry point: ibgateway.GWClient.main");
-            t.printStackTrace(Utils.getErrStream());
+            Utils.logStackTrace(t);
             Utils.exitWithError(ErrorCodes.CANT_FIND_ENTRYPOINT);
         }
     }
@@ -497,6 +539,7 @@ public class IbcTws {
                 shutdownTime = coldRestartTime;
             }
         }
+        IbcStatus.getInstance().setScheduledShutdown(shutdownTime, isColdRestart);
         long delay = shutdownTime.getTime() - System.currentTimeMillis();
         Utils.logToConsole((SessionManager.isGateway() ? "Gateway" : "TWS") +
                         " will be " + (isColdRestart ? "cold restarted" : "shut down") + " at " +
@@ -517,7 +560,7 @@ public class IbcTws {
             jclient.LoginFrame.main(twsArgs);
         } catch (Throwable t) {
             Utils.logError("Exception occurred at TWS entry point: jclient.LoginFrame.main");
-            t.printStackTrace(Utils.getErrStream());
+            Utils.logStackTrace(t);
             Utils.exitWithError(ErrorCodes.CANT_FIND_ENTRYPOINT);
         }
     }
@@ -526,24 +569,36 @@ public class IbcTws {
         Utils.logToConsole("TWS Settings directory is: " + getTWSSettingsDirectory());
         SessionManager.startSession();
         JtsIniManager.initialise(getJtsIniFilePath());
+        ConfigurationRecord.initialise(getTWSSettingsDirectory());
         if (SessionManager.isGateway()) {
             startGateway();
         } else {
             startTws();
         }
 
-        configureResetOrderIdsAtStart();
-        configureApiPort();
-        configureMasterClientID();
-        configureReadOnlyApi();
-        configureSendMarketDataInLotsForUSstocks();
-        configureAutoLogoffOrRestart();
-        configureApiPrecautions();
+        // all the startup configuration is done with a single opening of the
+        // Global Configuration dialog
+        ConfigurationTransaction startupConfiguration = new ConfigurationTransaction();
+        startupConfiguration.setRecorded();
+        configureResetOrderIdsAtStart(startupConfiguration);
+        configureApiPort(startupConfiguration);
+        configureMasterClientID(startupConfiguration);
+        configureReadOnlyApi(startupConfiguration);
+        configureSendMarketDataInLotsForUSstocks(startupConfiguration);
+        configureAutoLogoffOrRestart(startupConfiguration);
+        configureApiPrecautions(startupConfiguration);
+        MyCachedThreadPool.getInstance().execute(() -> {
+            if (startupConfiguration.execute()) {
+                IbcStatus.getInstance().setStartupConfigurationApplied();
+            } else {
+                IbcStatus.getInstance().setStartupConfigurationFailed();
+            }
+        });
         
         Utils.sendConsoleOutputToTwsLog(!Settings.settings().getBoolean("LogToConsole", false));
     }
     
-    private static void configureResetOrderIdsAtStart() {
+    private static void configureResetOrderIdsAtStart(ConfigurationTransaction transaction) {
         String configName= "ResetOrderIdsAtStart";
         boolean resetOrderIds = Settings.settings().getBoolean(configName, false);
         if (resetOrderIds) {
@@ -551,12 +606,12 @@ public class IbcTws {
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureResetOrderIdsTask(resetOrderIds))).executeAsync();
+            transaction.add(new ConfigureResetOrderIdsTask(resetOrderIds));
         }
             
     }
     
-    private static void configureApiPort() {
+    private static void configureApiPort(ConfigurationTransaction transaction) {
         String configName = "OverrideTwsApiPort";
         int portNumber = Settings.settings().getInt(configName, 0);
         if (portNumber != 0) {
@@ -564,11 +619,11 @@ public class IbcTws {
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureTwsApiPortTask(portNumber))).executeAsync();
+            transaction.add(new ConfigureTwsApiPortTask(portNumber));
         }
     }
     
-    private static void configureMasterClientID() {
+    private static void configureMasterClientID(ConfigurationTransaction transaction) {
         String configName = "OverrideTwsMasterClientID";
         String masterClientID = Settings.settings().getString(configName, "");
         if (!masterClientID.equals("")) {
@@ -576,11 +631,11 @@ public class IbcTws {
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureTwsMasterClientIDTask(masterClientID))).executeAsync();
+            transaction.add(new ConfigureTwsMasterClientIDTask(masterClientID));
         }
     }
 
-    private static void configureAutoLogoffOrRestart() {
+    private static void configureAutoLogoffOrRestart(ConfigurationTransaction transaction) {
         String configName = "AutoLogoffTime Or AutoRestartTime";
         String autoLogoffTime = Settings.settings().getString("AutoLogoffTime", "");
         String autoRestartTime = Settings.settings().getString("AutoRestartTime", "");
@@ -591,27 +646,27 @@ public class IbcTws {
             }
         }
         if (autoRestartTime.length() != 0) {
-            (new ConfigurationTask(new ConfigureAutoLogoffOrRestartTimeTask("Auto restart", autoRestartTime))).executeAsync();
+            transaction.add(new ConfigureAutoLogoffOrRestartTimeTask("Auto restart", autoRestartTime));
             if (autoLogoffTime.length() != 0) {
                 Utils.logToConsole("AutoLogoffTime is ignored because AutoRestartTime is also set");
             }
         } else if (autoLogoffTime.length() != 0) {
-            (new ConfigurationTask(new ConfigureAutoLogoffOrRestartTimeTask("Auto logoff", autoLogoffTime))).executeAsync();
+            transaction.add(new ConfigureAutoLogoffOrRestartTimeTask("Auto logoff", autoLogoffTime));
         }
     }
     
-    private static void configureReadOnlyApi() {
+    private static void configureReadOnlyApi(ConfigurationTransaction transaction) {
         String configName = "ReadOnlyApi";
         if (!Settings.settings().getString(configName, "").equals("")) {
             if (SessionManager.isFIX()){
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureReadOnlyApiTask(Settings.settings().getBoolean(configName,true)))).executeAsync();
+            transaction.add(new ConfigureReadOnlyApiTask(Settings.settings().getBoolean(configName,true)));
         }
     }
     
-    private static void configureSendMarketDataInLotsForUSstocks(){
+    private static void configureSendMarketDataInLotsForUSstocks(ConfigurationTransaction transaction) {
         String configName = "SendMarketDataInLotsForUSstocks";
         String sendMarketDataInLots = Settings.settings().getString(configName, "");
         if (!sendMarketDataInLots.equals("")) {
@@ -619,11 +674,11 @@ public class IbcTws {
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureSendMarketDataInLotsForUSstocksTask(Settings.settings().getBoolean(configName, true)))).executeAsync();
+            transaction.add(new ConfigureSendMarketDataInLotsForUSstocksTask(Settings.settings().getBoolean(configName, true)));
         }
     }
     
-    private static void configureApiPrecautions() {
+    private static void configureApiPrecautions(ConfigurationTransaction transaction) {
         String configName = "ApiPrecautions";
 
         String bypassOrderPrecautions = Settings.settings().getString("BypassOrderPrecautions", "");
@@ -649,7 +704,7 @@ public class IbcTws {
                 Utils.logToConsole(configName + " - ignored for FIX");
                 return;
             }
-            (new ConfigurationTask(new ConfigureApiPrecautionsTask(
+            transaction.add(new ConfigureApiPrecautionsTask(
                                     bypassOrderPrecautions,
                                     bypassBondWarning,
                                     bypassNegativeYieldToWorstConfirmation,
@@ -658,7 +713,7 @@ public class IbcTws {
                                     bypassPriceBasedVolatilityRiskWarning,
                                     bypassUSStocksMarketDataInSharesWarning,
                                     bypassRedirectOrderWarning,
-                                    bypassNoOverfillProtectionPrecaution))).executeAsync();
+                                    bypassNoOverfillProtectionPrecaution));
             
         }
     }
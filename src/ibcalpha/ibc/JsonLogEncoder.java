@@ -0,0 +1,156 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Encodes log records as single-line JSON objects (one per line, as in the
+ * JSON Lines format), appending them to a caller-supplied buffer.
+ * 
+ * The properties are (those with no value being omitted):
+ * 
+ *   ts           the time in UTC, in ISO 8601 format with milliseconds
+ *   level        ERROR, INFO or DEBUG
+ *   subsystem    as in the LogLevel setting
+ *   event        the type of event (for structured records)
+ *   message      the text that would be logged in the normal format
+ *   window       the title of the window concerned
+ *   handler      the IBC class that handled the window or action
+ *   loginState   the login state
+ *   command      the command server command
+ *   durationMs   how long the operation took
+ *   exception    the exception's stack trace
+ * 
+ * An instance must only be used by one thread at a time.
+ */
+class JsonLogEncoder {
+
+    private static final DateTimeFormatter SECONDS_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.").withZone(ZoneOffset.UTC);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringWriter stackTraceWriter = new StringWriter();
+    private final PrintWriter stackTracePrinter = new PrintWriter(stackTraceWriter);
+
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedSecondText;
+
+    private StringBuilder sb;
+    private boolean firstProperty;
+
+    void encode(StringBuilder sb, long time, LogLevel level, String subsystem, String message, Throwable throwable, LogEvent event) {
+        this.sb = sb;
+        sb.append('{');
+        firstProperty = true;
+
+        appendName("ts");
+        sb.append('"');
+        appendTimestamp(time);
+        sb.append('"');
+
+        appendProperty("level", level.name());
+        appendProperty("subsystem", subsystem);
+        if (event != null) {
+            appendProperty("event", event.event);
+            appendProperty("message", event.message);
+            appendProperty("window", event.window);
+            appendProperty("handler", event.handler);
+            appendProperty("loginState", event.loginState);
+            appendProperty("command", event.command);
+            if (event.durationMillis >= 0) {
+                appendName("durationMs");
+                sb.append(event.durationMillis);
+            }
+        } else {
+            appendProperty("message", message);
+        }
+        if (throwable != null) {
+            stackTraceWriter.getBuffer().setLength(0);
+            throwable.printStackTrace(stackTracePrinter);
+            stackTracePrinter.flush();
+            appendProperty("exception", stackTraceWriter.getBuffer());
+            if (stackTraceWriter.getBuffer().capacity() > 64 * 1024) stackTraceWriter.getBuffer().trimToSize();
+        }
+
+        sb.append('}').append('\n');
+        this.sb = null;
+    }
+
+    private void appendProperty(String name, CharSequence value) {
+        if (value == null) return;
+        appendName(name);
+        appendString(value);
+    }
+
+    private void appendName(String name) {
+        if (!firstProperty) sb.append(',');
+        firstProperty = false;
+        sb.append('"').append(name).append("\":");
+    }
+
+    private void appendString(CharSequence value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private void appendTimestamp(long time) {
+        long second = Math.floorDiv(time, 1000);
+        if (second != cachedSecond) {
+            cachedSecondText = SECONDS_FORMATTER.format(Instant.ofEpochSecond(second));
+            cachedSecond = second;
+        }
+        sb.append(cachedSecondText);
+        int millis = (int) Math.floorMod(time, 1000);
+        if (millis < 100) sb.append('0');
+        if (millis < 10) sb.append('0');
+        sb.append(millis).append('Z');
+    }
+
+}
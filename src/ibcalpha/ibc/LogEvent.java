@@ -0,0 +1,85 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+/**
+ * A log record with structured fields, for things that are worth analysing
+ * from the log (such as windows being handled, login state changes, commands
+ * and configuration changes).
+ * 
+ * When the log format is JSON, each field is written as a separate JSON
+ * property. Otherwise only the message is written, and an event with no
+ * message doesn't appear in the log at all.
+ * 
+ * For example:
+ * 
+ *     Utils.logEvent(new LogEvent(LogLevel.INFO, LogLevels.CONFIG, "configActionCompleted")
+ *                         .handler(action.getClass().getSimpleName())
+ *                         .duration(millis)
+ *                         .message(action.getClass().getSimpleName() + " took " + millis + " ms"));
+ */
+class LogEvent {
+    final LogLevel level;
+    final String subsystem;
+    final String event;
+
+    String message;
+    String window;
+    String handler;
+    String loginState;
+    String command;
+    long durationMillis = -1;
+
+    LogEvent(LogLevel level, String subsystem, String event) {
+        this.level = level;
+        this.subsystem = subsystem;
+        this.event = event;
+    }
+
+    LogEvent message(String message) {
+        this.message = message;
+        return this;
+    }
+
+    LogEvent window(String title) {
+        this.window = title;
+        return this;
+    }
+
+    LogEvent handler(String handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    LogEvent loginState(Object loginState) {
+        this.loginState = (loginState == null) ? null : loginState.toString();
+        return this;
+    }
+
+    LogEvent command(String command) {
+        this.command = command;
+        return this;
+    }
+
+    LogEvent duration(long millis) {
+        this.durationMillis = millis;
+        return this;
+    }
+}
@@ -0,0 +1,44 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+/**
+ * The levels at which IBC logs messages, in order of decreasing importance.
+ * 
+ * Messages logged at a level are written only if the level configured (by the
+ * LogLevel setting) for the relevant subsystem is at least as detailed: see
+ * LogLevels.
+ */
+enum LogLevel {
+    ERROR,
+    INFO,
+    DEBUG;
+
+    /**
+     * Returns the level with the specified name (ignoring case), or null if
+     * there is no such level.
+     */
+    static LogLevel fromName(String name) {
+        for (LogLevel level : values()) {
+            if (level.name().equalsIgnoreCase(name)) return level;
+        }
+        return null;
+    }
+}
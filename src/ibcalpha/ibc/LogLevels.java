@@ -0,0 +1,115 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Determines which messages are logged, according to the LogLevel setting.
+ * 
+ * The setting consists of a default level, optionally followed by overrides
+ * for individual subsystems, separated by commas. For example:
+ * 
+ *     LogLevel=info, window:debug, mainwindow:debug
+ * 
+ * Messages that don't belong to a particular subsystem use the default level.
+ */
+class LogLevels {
+
+    static final String WINDOW = "window";
+    static final String LOGIN = "login";
+    static final String MAIN_WINDOW = "mainwindow";
+    static final String CONFIG_DIALOG = "configdialog";
+    static final String CONFIG = "config";
+    static final String COMMAND_SERVER = "commandserver";
+
+    private static final List<String> SUBSYSTEMS = Arrays.asList(WINDOW, LOGIN, MAIN_WINDOW, CONFIG_DIALOG, CONFIG, COMMAND_SERVER);
+
+    private static final LogLevels DEFAULT = new LogLevels(LogLevel.INFO, new HashMap<>());
+
+    private static volatile LogLevels _instance;
+
+    private final LogLevel defaultLevel;
+    private final Map<String, LogLevel> subsystemLevels;
+
+    private LogLevels(LogLevel defaultLevel, Map<String, LogLevel> subsystemLevels) {
+        this.defaultLevel = defaultLevel;
+        this.subsystemLevels = subsystemLevels;
+    }
+
+    static LogLevels getInstance() {
+        LogLevels instance = _instance;
+        if (instance != null) return instance;
+
+        // until the settings have been loaded, the defaults apply
+        if (Settings.settings() == null) return DEFAULT;
+
+        synchronized (LogLevels.class) {
+            if (_instance == null) _instance = create(Settings.settings().getString("LogLevel", "info"));
+            return _instance;
+        }
+    }
+
+    /**
+     * Indicates whether messages at the specified level for the specified 
+     * subsystem (or for no particular subsystem if null) are to be logged.
+     */
+    boolean isEnabled(LogLevel level, String subsystem) {
+        LogLevel configured = (subsystem == null) ? null : subsystemLevels.get(subsystem);
+        if (configured == null) configured = defaultLevel;
+        return level.compareTo(configured) <= 0;
+    }
+
+    private static LogLevels create(String setting) {
+        LogLevel defaultLevel = LogLevel.INFO;
+        Map<String, LogLevel> subsystemLevels = new HashMap<>();
+
+        for (String item : setting.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) continue;
+
+            int i = item.indexOf(':');
+            if (i < 0) {
+                LogLevel level = LogLevel.fromName(item);
+                if (level == null) {
+                    Utils.logError("the LogLevel setting is invalid: " + item + " is not a valid level");
+                } else {
+                    defaultLevel = level;
+                }
+                continue;
+            }
+
+            String subsystem = item.substring(0, i).trim().toLowerCase();
+            LogLevel level = LogLevel.fromName(item.substring(i + 1).trim());
+            if (!SUBSYSTEMS.contains(subsystem)) {
+                Utils.logError("the LogLevel setting is invalid: " + subsystem + " is not a valid subsystem (valid subsystems are " + SUBSYSTEMS + ")");
+            } else if (level == null) {
+                Utils.logError("the LogLevel setting is invalid: " + item + " does not specify a valid level");
+            } else {
+                subsystemLevels.put(subsystem, level);
+            }
+        }
+        return new LogLevels(defaultLevel, subsystemLevels);
+    }
+
+}
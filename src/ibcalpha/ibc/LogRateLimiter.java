@@ -0,0 +1,195 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often the same message can be logged, so that when TWS gets
+ * into a bad state and IBC reports the same problem over and over again,
+ * the log (and the disk it's on) isn't swamped.
+ * 
+ * Each distinct message has a token bucket that allows up to LogRepeatLimit
+ * occurrences at once, refilled at LogRepeatLimit per LogRepeatWindow
+ * seconds. Occurrences beyond that are not logged, but are counted: the
+ * count is reported as 'repeated N more times' when the message is next
+ * logged, or at the end of the window if it isn't.
+ * 
+ * If LogRepeatLimit is 0, messages are not limited.
+ */
+class LogRateLimiter {
+
+    // the number of distinct messages tracked: beyond this, further messages
+    // share a single bucket
+    private static final int MAX_KEYS = 500;
+    private static final String OVERFLOW_KEY = "";
+
+    private static final int DEFAULT_LIMIT = 5;
+    private static final int DEFAULT_WINDOW_SECONDS = 60;
+
+    private static final LogRateLimiter _instance = new LogRateLimiter();
+
+    static LogRateLimiter getInstance() {
+        return _instance;
+    }
+
+    private static final class Bucket {
+        final boolean isError;
+        String message;
+        double tokens;
+        long lastRefillMillis;
+        int suppressed;
+        long firstSuppressedMillis;
+
+        Bucket(boolean isError, String message, double tokens, long now) {
+            this.isError = isError;
+            this.message = message;
+            this.tokens = tokens;
+            this.lastRefillMillis = now;
+        }
+    }
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private boolean configured;
+    private int limit;
+    private long windowMillis;
+    private boolean sweepScheduled;
+
+    private LogRateLimiter() {}
+
+    /**
+     * Determines whether a message may be logged now.
+     * @param key
+     * identifies messages that count as the same
+     * @param isError
+     * whether the message is an error (this affects how the 'repeated' 
+     * summary is logged)
+     * @param message
+     * the message, for use in the 'repeated' summary
+     * @return
+     * -1 if the message must not be logged; otherwise the number of
+     * occurrences of the message that have not been logged since it was last
+     * logged (which the caller should report before logging it)
+     */
+    int admit(String key, boolean isError, String message) {
+        synchronized (this) {
+            if (!isConfigured() || limit == 0) return 0;
+
+            long now = System.currentTimeMillis();
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= MAX_KEYS) {
+                    key = OVERFLOW_KEY;
+                    message = "(various messages)";
+                    bucket = buckets.get(key);
+                }
+                if (bucket == null) {
+                    bucket = new Bucket(isError, message, limit, now);
+                    buckets.put(key, bucket);
+                }
+            }
+
+            bucket.tokens = Math.min(limit, bucket.tokens + (now - bucket.lastRefillMillis) * (double) limit / windowMillis);
+            bucket.lastRefillMillis = now;
+
+            if (bucket.tokens < 1) {
+                if (bucket.suppressed == 0) bucket.firstSuppressedMillis = now;
+                bucket.suppressed++;
+                scheduleSweep();
+                return -1;
+            }
+
+            bucket.tokens -= 1;
+            int suppressed = bucket.suppressed;
+            bucket.suppressed = 0;
+            return suppressed;
+        }
+    }
+
+    /**
+     * Returns the text reporting that a message was not logged the specified
+     * number of times.
+     */
+    static String repeatedMessage(String message, int count) {
+        return message + " [repeated " + count + " more " + (count == 1 ? "time" : "times") + "]";
+    }
+
+    private boolean isConfigured() {
+        if (configured) return true;
+        // until the settings are available, nothing is limited
+        if (Settings.settings() == null) return false;
+
+        // an invalid setting value is reported through the rate limited
+        // logger, which calls back into here, so the defaults must already be
+        // in force before the settings are read
+        limit = DEFAULT_LIMIT;
+        windowMillis = DEFAULT_WINDOW_SECONDS * 1000L;
+        configured = true;
+
+        limit = Math.max(0, Settings.settings().getInt("LogRepeatLimit", DEFAULT_LIMIT));
+        windowMillis = Math.max(1, Settings.settings().getInt("LogRepeatWindow", DEFAULT_WINDOW_SECONDS)) * 1000L;
+        return true;
+    }
+
+    private void scheduleSweep() {
+        if (sweepScheduled) return;
+        try {
+            MyScheduledExecutorService.getInstance().scheduleWithFixedDelay(this::sweep, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+            sweepScheduled = true;
+        } catch (RejectedExecutionException e) {
+            // IBC is shutting down
+        }
+    }
+
+    /*
+     * Reports messages that have been suppressed for a whole window, and
+     * forgets messages that haven't been seen for a while
+     */
+    private void sweep() {
+        List<Bucket> toReport = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext(); ) {
+                Bucket bucket = it.next();
+                if (bucket.suppressed != 0 && now - bucket.firstSuppressedMillis >= windowMillis) {
+                    toReport.add(bucket);
+                    counts.add(bucket.suppressed);
+                    bucket.suppressed = 0;
+                } else if (bucket.suppressed == 0 && now - bucket.lastRefillMillis >= windowMillis) {
+                    it.remove();
+                }
+            }
+        }
+
+        for (int i = 0; i < toReport.size(); i++) {
+            Bucket bucket = toReport.get(i);
+            Utils.logRepeated(bucket.isError, repeatedMessage(bucket.message, counts.get(i)));
+        }
+    }
+
+}
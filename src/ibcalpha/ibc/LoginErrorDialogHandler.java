@@ -34,6 +34,11 @@ public class LoginErrorDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         Utils.logToConsole("Login error message:" + SwingUtils.NEWLINE + SwingUtils.getTexts(window));
@@ -52,5 +57,10 @@ public class LoginErrorDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Login Error"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Login Error");
+    }
     
 }
@@ -36,6 +36,11 @@ public class LoginFailedDialogHandler implements WindowHandler  {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         Utils.logToConsole("Login failed");
@@ -55,4 +60,9 @@ public class LoginFailedDialogHandler implements WindowHandler  {
         return (SwingUtils.titleContains(window, DIALOG_TITLE));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining(DIALOG_TITLE);
+    }
+
 }
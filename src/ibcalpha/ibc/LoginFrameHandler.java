@@ -41,6 +41,11 @@ final class LoginFrameHandler extends AbstractLoginHandler {
                 SwingUtils.findButton(window, "Paper Log In") != null ||
                 SessionManager.isRestart()));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitle("New Login", "Login");
+    }
     
     private boolean listeningForUsernameChange;
 
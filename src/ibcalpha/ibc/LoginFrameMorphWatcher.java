@@ -0,0 +1,165 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JLabel;
+
+/**
+ * Detects the TWS 1016+ login frame turning into the Second Factor
+ * Authentication dialog.
+ *
+ * TWS does this by replacing the login frame's controls, which generates no
+ * window events, so instead the watcher listens for components being added to
+ * or removed from the frame, and for changes to the text of its labels. As soon
+ * as a label containing "SECOND FACTOR AUTHENTICATION" appears, the frame is
+ * passed to the SecondFactorAuthenticationDialogHandler as if it had just been
+ * opened.
+ *
+ * The watcher stops when the change is detected, when the frame is closed,
+ * when login completes, or after SecondFactorAuthenticationTimeout seconds,
+ * whichever happens first.
+ *
+ * All methods other than start() are called on the Swing event dispatch
+ * thread.
+ */
+class LoginFrameMorphWatcher extends ComponentTreeWatcher implements PropertyChangeListener {
+
+    private static final String SECOND_FACTOR_AUTHENTICATION_LABEL = "second factor authentication";
+
+    private final Window window;
+
+    private final WindowAdapter windowListener = new WindowAdapter() {
+        @Override
+        public void windowClosed(WindowEvent e) {
+            stop("Login frame closed");
+        }
+    };
+
+    private ScheduledFuture<?> deadline;
+    private boolean stopped;
+    private boolean rescanPending;
+
+    private LoginFrameMorphWatcher(Window window) {
+        this.window = window;
+    }
+
+    /**
+     * Starts watching the specified login frame.
+     */
+    static void start(Window window) {
+        final int timeout = Settings.settings().getInt("SecondFactorAuthenticationTimeout", 180);
+        LoginFrameMorphWatcher watcher = new LoginFrameMorphWatcher(window);
+        GuiDeferredExecutor.instance().execute(() -> watcher.begin(timeout));
+    }
+
+    private void begin(int timeout) {
+        window.addWindowListener(windowListener);
+        attach();
+        deadline = MyScheduledExecutorService.getInstance().schedule(
+                () -> GuiDeferredExecutor.instance().execute(() -> stop("Login frame did not become SecondFactorAuthenticationDialog within " + timeout + " seconds")),
+                timeout, TimeUnit.SECONDS);
+
+        // the change may already have happened
+        check();
+    }
+
+    private void attach() {
+        watch(window);
+        ComponentIterator.visit(window, component -> {
+            if (component instanceof JLabel) component.addPropertyChangeListener("text", this);
+            return false;
+        });
+    }
+
+    private void detach() {
+        unwatch(window);
+        ComponentIterator.visit(window, component -> {
+            if (component instanceof JLabel) component.removePropertyChangeListener("text", this);
+            return false;
+        });
+    }
+
+    @Override
+    void treeChanged() {
+        if (stopped || rescanPending) return;
+
+        // TWS adds and removes many components while rebuilding the frame, so
+        // rescan once they've all been dealt with
+        rescanPending = true;
+        GuiDeferredExecutor.instance().execute(() -> {
+            rescanPending = false;
+            if (stopped) return;
+
+            // pick up any new containers and labels
+            detach();
+            attach();
+            check();
+        });
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!stopped) check();
+    }
+
+    private void check() {
+        if (stopped) return;
+
+        if (LoginManager.loginManager().getLoginState() == LoginManager.LoginState.LOGGED_IN) {
+            stop("Login completed");
+            return;
+        }
+
+        if (ComponentIterator.visit(window, component ->
+                component instanceof JLabel &&
+                ((JLabel) component).getText() != null &&
+                ((JLabel) component).getText().toLowerCase().contains(SECOND_FACTOR_AUTHENTICATION_LABEL)) == null) return;
+
+        stop(null);
+
+        // the login frame has now become the 2FA dialog, so invoke the
+        // handler for that as if it had just been opened. This is deferred
+        // so that TWS can finish rebuilding the frame first
+        Utils.logToConsole("Login frame has now become SecondFactorAuthenticationDialog");
+        GuiDeferredExecutor.instance().execute(() -> {
+            TwsListener.logWindow(window, WindowEvent.WINDOW_OPENED);
+            TwsListener.logWindowStructure(window, WindowEvent.WINDOW_OPENED, true);
+            SecondFactorAuthenticationDialogHandler.getInstance().handleWindow(window, WindowEvent.WINDOW_OPENED);
+        });
+    }
+
+    private void stop(String reason) {
+        if (stopped) return;
+        stopped = true;
+
+        if (deadline != null) deadline.cancel(false);
+        window.removeWindowListener(windowListener);
+        detach();
+        if (reason != null) Utils.logToConsole("Stopped waiting for Login frame to become SecondFactorAuthenticationDialog: " + reason);
+    }
+
+}
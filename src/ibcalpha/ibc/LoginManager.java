@@ -84,6 +84,9 @@ public abstract class LoginManager {
     public void setLoginState(LoginState state) {
         if (state == loginState) return;
         loginState = state;
+        IbcStatus.getInstance().setLoginState(state);
+        IbcEvents.getInstance().publish(IbcEvents.LOGIN, String.valueOf(state));
+        recordLoginMetrics(state);
         if (null != loginState) switch (loginState) {
             case TWO_FA_IN_PROGRESS:
                 Utils.logToConsole("Second Factor Authentication initiated");
@@ -93,7 +96,7 @@ public abstract class LoginManager {
                 if (!totpSecret.isEmpty()) {
                     // Generate current TOTP code
                     String totpCode = generateTOTP(totpSecret);
-                    Utils.logToConsole("Current TOTP Code: " + totpCode);
+                    Utils.logDebug(LogLevels.LOGIN, () -> "Current TOTP Code: " + totpCode);
                 }
                 
                 if (LoginStartTime == null) LoginStartTime = Instant.now();
@@ -113,6 +116,41 @@ public abstract class LoginManager {
     }
 
     private Instant LoginStartTime;
+
+    // System.nanoTime() values for the login duration metrics, or 0
+    private long loginStartNanos;
+    private long secondFactorStartNanos;
+
+    private void recordLoginMetrics(LoginState state) {
+        if (state == null) return;
+        LogEvent event = new LogEvent(LogLevel.INFO, LogLevels.LOGIN, "loginStateChanged").loginState(state);
+        switch (state) {
+            case LOGGING_IN:
+                if (loginStartNanos == 0) loginStartNanos = System.nanoTime();
+                break;
+            case TWO_FA_IN_PROGRESS:
+                if (secondFactorStartNanos == 0) secondFactorStartNanos = System.nanoTime();
+                break;
+            case LOGGED_IN:
+                if (loginStartNanos != 0) {
+                    event.duration((System.nanoTime() - loginStartNanos) / 1000000);
+                    IbcMetrics.getInstance().loginDuration.observeSince(loginStartNanos);
+                }
+                if (secondFactorStartNanos != 0) IbcMetrics.getInstance().secondFactorDuration.observeSince(secondFactorStartNanos);
+                loginStartNanos = 0;
+                secondFactorStartNanos = 0;
+                break;
+            case LOGIN_FAILED:
+                if (loginStartNanos != 0) event.duration((System.nanoTime() - loginStartNanos) / 1000000);
+                IbcMetrics.getInstance().loginFailures.increment();
+                loginStartNanos = 0;
+                secondFactorStartNanos = 0;
+                break;
+            default:
+                break;
+        }
+        Utils.logEvent(event);
+    }
     private ScheduledFuture<?> shutdownAfterTimeTask;
 
     void secondFactorAuthenticationDialogClosed() {
@@ -33,6 +33,11 @@ class MainWindowFrameHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (eventID != WindowEvent.WINDOW_OPENED) return;
@@ -46,5 +51,10 @@ class MainWindowFrameHandler implements WindowHandler {
 
         return (SwingUtils.findMenuItemInAnyMenuBar(window, new String [] {"File", "Lock Application"}) != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames();
+    }
 }
 
@@ -0,0 +1,100 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+
+/**
+ * Remembers the JMenuItem found at each menu path within a container, so
+ * that repeatedly invoking the same menu item does not search the container's
+ * menu bars each time.
+ *
+ * A remembered menu item is only returned if it is still where it was found:
+ * that is, if it and each of the menus above it still have the texts given
+ * by the path, and the top-level menu is still in a menu bar within the
+ * container. Otherwise (for example if TWS has rebuilt its menus, or changed
+ * from the Classic to the Mosaic layout) the entry is discarded and the menu
+ * bars are searched again.
+ *
+ * Must be used on the Swing event dispatch thread.
+ */
+class MenuItemCache {
+
+    private static final Map<Container, Map<String, WeakReference<JMenuItem>>> cache = new WeakHashMap<>();
+
+    private MenuItemCache() {}
+
+    /**
+     * Returns the JMenuItem with the given path from the first JMenuBar in
+     * the container that contains it.
+     * @param container
+     *  the Container to search in
+     * @param path
+     *  the required menu path
+     * @return
+     *  the JMenuItem at the specified path, if found; otherwise null
+     */
+    static JMenuItem findMenuItem(Container container, String[] path) {
+        if (path.length == 0) return null;
+
+        String key = String.join(" > ", path).toLowerCase();
+        Map<String, WeakReference<JMenuItem>> items = cache.get(container);
+        if (items != null) {
+            WeakReference<JMenuItem> ref = items.get(key);
+            JMenuItem menuItem = (ref == null) ? null : ref.get();
+            if (menuItem != null && isAtPath(menuItem, container, path)) return menuItem;
+            items.remove(key);
+        }
+
+        JMenuItem menuItem = SwingUtils.findMenuItemInAnyMenuBar(container, path);
+        if (menuItem != null) {
+            if (items == null) {
+                items = new HashMap<>();
+                cache.put(container, items);
+            }
+            items.put(key, new WeakReference<>(menuItem));
+        }
+        return menuItem;
+    }
+
+    private static boolean isAtPath(JMenuItem menuItem, Container container, String[] path) {
+        Component component = menuItem;
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (!(component instanceof JMenuItem)) return false;
+            if (!path[i].equalsIgnoreCase(((JMenuItem) component).getText())) return false;
+
+            Container parent = component.getParent();
+            if (i == 0) return parent instanceof JMenuBar && SwingUtilities.isDescendingFrom(parent, container);
+            if (!(parent instanceof JPopupMenu)) return false;
+            component = ((JPopupMenu) parent).getInvoker();
+        }
+        return false;
+    }
+
+}
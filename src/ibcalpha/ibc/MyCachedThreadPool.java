@@ -20,12 +20,95 @@ package ibcalpha.ibc;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Provides the executors that IBC uses to run tasks off the Swing event
+ * dispatch thread.
+ * 
+ * If the UseVirtualThreads setting is 'yes' and the JVM supports virtual
+ * threads (Java 21 or later), each task runs on its own virtual thread, so
+ * that tasks that spend most of their time waiting (for windows to appear,
+ * for configuration dialogs, for command server clients) don't each tie up a
+ * platform thread. Otherwise tasks run on platform threads as before.
+ * 
+ * IBC is built for Java 8, so the virtual thread API is accessed by reflection.
+ */
 public class MyCachedThreadPool {
-    private static final ExecutorService instance = Executors.newCachedThreadPool();
+    private static ExecutorService instance;
+    private static Boolean useVirtualThreads;
 
     private MyCachedThreadPool() {}
 
-    static ExecutorService getInstance() {return instance;}
+    static synchronized ExecutorService getInstance() {
+        if (instance == null) {
+            instance = useVirtualThreads() ? newVirtualThreadExecutor("IBC-") : Executors.newCachedThreadPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns an executor for running the tasks of a particular subsystem.
+     * 
+     * With platform threads, at most the specified number of threads are used,
+     * and they are named with the specified prefix followed by a sequence
+     * number. Idle threads are ended after a minute.
+     * 
+     * With virtual threads, each task runs on its own virtual thread named in
+     * the same way.
+     */
+    static ExecutorService newWorkerPool(String namePrefix, int maxThreads) {
+        if (useVirtualThreads()) return newVirtualThreadExecutor(namePrefix + "-");
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(
+                maxThreads, maxThreads, 
+                60, TimeUnit.SECONDS, 
+                new LinkedBlockingQueue<>(), 
+                (r) -> new Thread(r, namePrefix + "-" + threadNumber.incrementAndGet()));
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    static synchronized boolean useVirtualThreads() {
+        if (useVirtualThreads == null) {
+            // settings may not yet have been loaded if a task is started very
+            // early, in which case we stick with platform threads
+            boolean wanted = Settings.settings() != null && Settings.settings().getBoolean("UseVirtualThreads", false);
+            useVirtualThreads = wanted && isVirtualThreadSupported();
+            if (wanted) {
+                Utils.logToConsole(useVirtualThreads ? 
+                        "Using virtual threads" :
+                        "UseVirtualThreads=yes is ignored because virtual threads require Java 21 or later: this is Java " + System.getProperty("java.version"));
+            }
+        }
+        return useVirtualThreads;
+    }
+
+    private static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            // Thread.ofVirtual().name(namePrefix, 1).factory()
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
 
 }
@@ -33,6 +33,10 @@ public class NSEComplianceFrameHandler  implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (! Settings.settings().getBoolean("DismissNSEComplianceNotice", true)) return;
         window.setVisible(false);
@@ -45,4 +49,9 @@ public class NSEComplianceFrameHandler  implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "NSE Compliance"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitleContaining("NSE Compliance");
+    }
 }
@@ -34,6 +34,10 @@ class NewerVersionDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (SwingUtils.clickButton(window, "OK")) {
         } else if (SwingUtils.clickButton(window, "No")) { // ie no we don't want the opportunity to upgrade now - Linux version only
@@ -50,5 +54,10 @@ class NewerVersionDialogHandler implements WindowHandler {
         return (op != null && op.getMessage() != null && op.getMessage().toString().contains("Newer Version"));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs();
+    }
+
 }
 
@@ -33,6 +33,10 @@ class NewerVersionFrameHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (SwingUtils.clickButton(window, "OK")) {
         } else if (SwingUtils.clickButton(window, "No")) { // ie no we don't want the opportunity to upgrade now - Linux version only
@@ -46,5 +50,10 @@ class NewerVersionFrameHandler implements WindowHandler {
 
         return (SwingUtils.findLabel(window, "Newer Version") != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withLabelContaining("Newer Version");
+    }
 }
 
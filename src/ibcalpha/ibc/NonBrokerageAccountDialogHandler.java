@@ -35,6 +35,11 @@ public class NonBrokerageAccountDialogHandler  implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (eventID == WindowEvent.WINDOW_CLOSED) {
@@ -57,4 +62,9 @@ public class NonBrokerageAccountDialogHandler  implements WindowHandler {
         return (SwingUtils.findLabel(window, "This is not a brokerage account") != null );
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("This is not a brokerage account");
+    }
+
 }
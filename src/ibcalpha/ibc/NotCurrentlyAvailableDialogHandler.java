@@ -35,6 +35,10 @@ class NotCurrentlyAvailableDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (! SwingUtils.clickButton(window, "OK")) {
             Utils.logError("The system is not currently available.");
@@ -61,5 +65,10 @@ class NotCurrentlyAvailableDialogHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Login") &&
                 SwingUtils.findLabel(window, "not currently available") != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Login").withLabelContaining("not currently available");
+    }
 }
 
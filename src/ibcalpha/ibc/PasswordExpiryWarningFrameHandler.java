@@ -33,6 +33,10 @@ public class PasswordExpiryWarningFrameHandler  implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (! Settings.settings().getBoolean("DismissPasswordExpiryWarning", false)) return;
         if (! SwingUtils.clickButton(window, "OK")) {
@@ -45,4 +49,9 @@ public class PasswordExpiryWarningFrameHandler  implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Password Notice"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitleContaining("Password Notice");
+    }
 }
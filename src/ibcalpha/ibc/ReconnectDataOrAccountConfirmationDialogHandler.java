@@ -35,6 +35,11 @@ public class ReconnectDataOrAccountConfirmationDialogHandler implements WindowHa
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (! SwingUtils.clickButton(window, "OK")) {
@@ -53,5 +58,12 @@ public class ReconnectDataOrAccountConfirmationDialogHandler implements WindowHa
                 (SwingUtils.findLabel(window, "Are you sure you want to execute \"simulate") != null)
                 );
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs()
+                .withTitleContaining("IBKR Trader Workstation", "IBKR Gateway")
+                .withLabelContaining("Are you sure you want to execute \"simulate");
+    }
     
 }
@@ -34,6 +34,11 @@ public class ReloginDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         Utils.logToConsole("Re-login to session");
@@ -50,4 +55,9 @@ public class ReloginDialogHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Re-login is required"));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Re-login is required");
+    }
+
 }
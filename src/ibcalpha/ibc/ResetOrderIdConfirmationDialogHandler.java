@@ -36,6 +36,11 @@ public class ResetOrderIdConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         final String CONFIRM_RESET = "confirm";
@@ -101,5 +106,10 @@ public class ResetOrderIdConfirmationDialogHandler implements WindowHandler {
 
         return (SwingUtils.findLabel(window, "Are you sure you want to reset API order ID sequence?") != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("Are you sure you want to reset API order ID sequence?");
+    }
     
 }
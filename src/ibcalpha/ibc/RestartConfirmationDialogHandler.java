@@ -32,6 +32,10 @@ public class RestartConfirmationDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (!SwingUtils.clickButton(window, "Yes")) {
             Utils.logError("could not ignore shutdown confirmation dialog because we could not find one of the controls.");
@@ -43,4 +47,9 @@ public class RestartConfirmationDialogHandler implements WindowHandler {
 
         return (SwingUtils.findLabel(window, "Are you sure you would like to restart the application") != null);
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withLabelContaining("Are you sure you would like to restart the application");
+    }
 }
@@ -56,6 +56,7 @@ class RestartTask
 
         try {
             writeInfo("Restarting TWS");
+            IbcEvents.getInstance().publish(IbcEvents.SHUTDOWN, "Restarting");
             restart();
         } catch (Exception ex) {
             writeNack(ex.getMessage());
@@ -0,0 +1,267 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log file that IBC writes to directly, which is rotated when it reaches
+ * a maximum size and/or at the start of each hour or day.
+ * 
+ * When the file is rotated, it is renamed to include the time of rotation
+ * (for example ibc.log becomes ibc.20260101-000000.log) and a new file is
+ * started. Rotated files are optionally compressed with gzip, and only the
+ * specified number of the most recent rotated files are kept. Compression
+ * and deletion are done on a background thread, so they don't delay logging.
+ * 
+ * Apart from the constructor, the methods of this class must only be called
+ * from one thread (AsyncLogger's writer thread).
+ */
+class RotatingLogFile {
+
+    enum Rotation {
+        NONE,
+        HOURLY,
+        DAILY
+    }
+
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final DateTimeFormatter ROTATED_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path path;
+    private final long maxBytes;
+    private final Rotation rotation;
+    private final boolean compress;
+    private final int retention;
+
+    // the rotated name is <prefix><timestamp><suffix>
+    private final String rotatedPrefix;
+    private final String rotatedSuffix;
+
+    private final ExecutorService housekeeper = Executors.newSingleThreadExecutor((r) -> {
+        Thread t = new Thread(r, "IBC-logfile");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    private FileChannel channel;
+    private long size;
+    private LocalDateTime nextRotationTime;
+
+    /**
+     * @param path
+     * the log file
+     * @param maxBytes
+     * the size at which the file is rotated, or 0 if it is not to be rotated
+     * because of its size
+     * @param rotation
+     * whether the file is also rotated at the start of each hour or day
+     * @param compress
+     * whether rotated files are compressed
+     * @param retention
+     * the number of rotated files to keep, or 0 to keep them all
+     */
+    RotatingLogFile(Path path, long maxBytes, Rotation rotation, boolean compress, int retention) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.rotation = rotation;
+        this.compress = compress;
+        this.retention = retention;
+
+        String name = this.path.getFileName().toString();
+        int i = name.lastIndexOf('.');
+        rotatedPrefix = (i > 0 ? name.substring(0, i) : name) + ".";
+        rotatedSuffix = (i > 0) ? name.substring(i) : "";
+
+        if (this.path.getParent() != null) Files.createDirectories(this.path.getParent());
+
+        // if the existing file belongs to an earlier period, it's rotated now
+        // rather than being appended to
+        if (rotation != Rotation.NONE && Files.exists(this.path) && Files.size(this.path) > 0) {
+            LocalDateTime modified = LocalDateTime.ofInstant(Files.getLastModifiedTime(this.path).toInstant(), ZoneId.systemDefault());
+            if (modified.isBefore(periodStart(LocalDateTime.now()))) moveAside(modified);
+        }
+        open();
+
+        // finish off any housekeeping that was interrupted when IBC last ended
+        housekeeper.execute(this::housekeep);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    void write(CharSequence text) throws IOException {
+        if (size > 0 && ((maxBytes > 0 && size >= maxBytes) || 
+                         (nextRotationTime != null && !LocalDateTime.now().isBefore(nextRotationTime)))) {
+            rotate();
+        }
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) writeBuffer();
+        while (encoder.flush(buffer).isOverflow()) writeBuffer();
+        writeBuffer();
+    }
+
+    void close() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            // nothing useful can be done
+        }
+        channel = null;
+        housekeeper.shutdown();
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) size += channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        nextRotationTime = (rotation == Rotation.NONE) ? null : nextPeriodStart(LocalDateTime.now());
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        channel = null;
+        moveAside(LocalDateTime.now());
+        open();
+        housekeeper.execute(this::housekeep);
+    }
+
+    private void moveAside(LocalDateTime time) throws IOException {
+        String timestamp = ROTATED_NAME_FORMATTER.format(time);
+        Path target = path.resolveSibling(rotatedPrefix + timestamp + rotatedSuffix);
+        for (int n = 1; Files.exists(target) || Files.exists(compressedPath(target)); n++) {
+            target = path.resolveSibling(rotatedPrefix + timestamp + "-" + n + rotatedSuffix);
+        }
+        Files.move(path, target);
+    }
+
+    private LocalDateTime periodStart(LocalDateTime time) {
+        return time.truncatedTo(rotation == Rotation.HOURLY ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+
+    private LocalDateTime nextPeriodStart(LocalDateTime time) {
+        return periodStart(time).plus(1, rotation == Rotation.HOURLY ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+
+    /*
+     * Runs on the housekeeping thread
+     */
+    private void housekeep() {
+        List<Path> rotated = getRotatedFiles();
+        if (compress) {
+            for (int i = 0; i < rotated.size(); i++) {
+                Path file = rotated.get(i);
+                if (file.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) continue;
+                rotated.set(i, compressFile(file));
+            }
+        }
+        if (retention > 0) {
+            for (int i = 0; i < rotated.size() - retention; i++) {
+                try {
+                    Files.deleteIfExists(rotated.get(i));
+                } catch (IOException e) {
+                    Utils.logError("Could not delete old log file " + rotated.get(i) + ": " + e);
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the rotated files, oldest first
+     */
+    private List<Path> getRotatedFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.getParent(), rotatedPrefix + "*")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(COMPRESSED_SUFFIX)) name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+                if (!name.endsWith(rotatedSuffix) || name.length() <= rotatedPrefix.length() + rotatedSuffix.length()) continue;
+                String timestamp = name.substring(rotatedPrefix.length(), name.length() - rotatedSuffix.length());
+                if (!timestamp.matches("\\d{8}-\\d{6}(-\\d+)?")) continue;
+                files.add(file);
+            }
+        } catch (IOException e) {
+            Utils.logError("Could not list old log files: " + e);
+        }
+        // the timestamps in the names mean that alphabetical order is
+        // chronological order (apart from the rare -n suffixes)
+        Collections.sort(files);
+        return files;
+    }
+
+    private Path compressFile(Path file) {
+        Path target = compressedPath(file);
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            byte[] bytes = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(bytes)) > 0) out.write(bytes, 0, n);
+        } catch (IOException e) {
+            Utils.logError("Could not compress log file " + file + ": " + e);
+            return file;
+        }
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            Utils.logError("Could not delete log file " + file + " after compressing it: " + e);
+        }
+        return target;
+    }
+
+    private static Path compressedPath(Path file) {
+        return file.resolveSibling(file.getFileName() + COMPRESSED_SUFFIX);
+    }
+
+}
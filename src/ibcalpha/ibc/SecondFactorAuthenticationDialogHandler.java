@@ -47,6 +47,11 @@ public class SecondFactorAuthenticationDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (eventID == WindowEvent.WINDOW_OPENED) {
@@ -81,6 +86,12 @@ public class SecondFactorAuthenticationDialogHandler implements WindowHandler {
             SwingUtils.titleContains(window, "Security Code Card Authentication");
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogsAndFrames()
+                .withTitleContaining("Second Factor Authentication", "Security Code Card Authentication");
+    }
+
     private void doReadonlyLogin(Window window){
         if (SwingUtils.clickButton(window, "Enter Read Only")) {
             Utils.logToConsole("initiating read-only login.");
@@ -160,7 +171,7 @@ public class SecondFactorAuthenticationDialogHandler implements WindowHandler {
             }
         } catch (Exception e) {
             Utils.logError("Error entering TOTP code: " + e.getMessage());
-            e.printStackTrace(Utils.getErrStream());
+            Utils.logStackTrace(e);
         }
     }
     
@@ -34,6 +34,11 @@ public class SecurityCodeDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (! Settings.settings().getBoolean("ReadOnlyLogin", false)) return;
@@ -51,4 +56,9 @@ public class SecurityCodeDialogHandler implements WindowHandler {
         return (SwingUtils.findButton(window, "Enter Read Only") != null);
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs();
+    }
+
 }
@@ -52,6 +52,7 @@ public class SessionManager {
         _isSessionStarted = true;
         
         _isFIX = Settings.settings().getBoolean("FIX", false);
+        IbcStatus.getInstance().setSessionStarted(_isFIX, TradingModeManager.tradingModeManager().getTradingMode());
         
         // test to see if the -Drestart VM option has been supplied
         _isRestart = ! (System.getProperties().getProperty("restart", "").isEmpty());
@@ -32,10 +32,16 @@ public class ShutdownProgressDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     public void handleWindow(Window window, int eventID) {
+        IbcEvents.getInstance().publish(IbcEvents.SHUTDOWN, "Shutdown in progress");
         MyCachedThreadPool.getInstance().shutdownNow();
         MyScheduledExecutorService.getInstance().shutdownNow();
         CommandServer.commandServer().shutdown();
+        HealthServer.stop();
     }
 
     public boolean recogniseWindow(Window window) {
@@ -44,5 +50,10 @@ public class ShutdownProgressDialogHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Shutdown progress"));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Shutdown progress");
+    }
+
   
 }
@@ -43,6 +43,11 @@ public class SplashFrameHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_CLOSED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         if (SessionManager.isGateway()) {
@@ -59,4 +64,9 @@ public class SplashFrameHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Starting application..."));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitleContaining("Starting application...");
+    }
+
 }
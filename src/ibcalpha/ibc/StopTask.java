@@ -75,10 +75,12 @@ class StopTask
     private void stop(String reason) {
         try {
             writeAck("Shutting down: " + reason);
+            IbcEvents.getInstance().publish(IbcEvents.SHUTDOWN, "Shutting down: " + reason);
             if (mChannel != null) mChannel.close();
             if (LoginManager.loginManager().getLoginState() != LoginManager.LoginState.LOGGED_IN) {
                 CommandServer.commandServer().shutdown();
                 Utils.logToConsole("Login has not completed: exiting immediately");
+                Utils.flushLog();
                 Runtime.getRuntime().halt(0);
             } else {
                 String[] closeMenuPath = SessionManager.isGateway() ? new String[] {"File", "Close"} : new String[] {"File", "Exit"};
@@ -90,12 +90,7 @@ class SwingUtils {
      *  the button, if was found;  otherwise null
      */
     static JButton findButton(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JButton && text.equalsIgnoreCase(((JButton)component).getText())) return (JButton)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).findByText(JButton.class, text);
     }
 
     /**
@@ -109,12 +104,7 @@ class SwingUtils {
      *  the checkbox, if it was found;  otherwise null
      */
     static JCheckBox findCheckBox(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JCheckBox && text.equalsIgnoreCase(((JCheckBox)component).getText())) return (JCheckBox)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).findByText(JCheckBox.class, text);
     }
 
     /**
@@ -130,13 +120,7 @@ class SwingUtils {
      *  the required JComboBox if it is found, otherwise null
      */
     static JComboBox<?> findComboBox(Container container, int ith) {
-        ComponentIterator iter = new ComponentIterator(container);
-        int i = 0;
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JComboBox<?> && i++ == ith) return (JComboBox<?>)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JComboBox.class, ith);
     }
 
     /**
@@ -150,12 +134,7 @@ class SwingUtils {
      *  the Component, if it was found;  otherwise null
      */
     static Component findComponent(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (text.equalsIgnoreCase(component.getName())) return component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).findByName(text);
     }
 
     /**
@@ -169,12 +148,7 @@ class SwingUtils {
      *  the radio button, if it was found;  otherwise null
      */
     static JRadioButton findRadioButton(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JRadioButton && text.equalsIgnoreCase(((JRadioButton)component).getText())) return (JRadioButton)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).findByText(JRadioButton.class, text);
     }
 
     /**
@@ -188,10 +162,9 @@ class SwingUtils {
      *  the JLabel, if it was found;  otherwise null
      */
     static JLabel findLabel(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JLabel && ((JLabel)component).getText() != null &&  ((JLabel)component).getText().toLowerCase().contains(text.toLowerCase())) return (JLabel)component;
+        String lowerText = text.toLowerCase();
+        for (JLabel label : ComponentIndex.forContainer(container).getComponents(JLabel.class)) {
+            if (label.getText() != null && label.getText().toLowerCase().contains(lowerText)) return label;
         }
         return null;
     }
@@ -209,13 +182,7 @@ class SwingUtils {
      *  the required JList if it is found, otherwise null
      */
     static JList<?> findList(Container container, int ith) {
-        ComponentIterator iter = new ComponentIterator(container);
-        int i = 0;
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JList<?> && i++ == ith) return (JList<?>)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JList.class, ith);
     }
 
     /**
@@ -229,46 +196,33 @@ class SwingUtils {
      *  the JTextArea, if it was found;  otherwise null
      */
     static JTextArea findTextArea(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JTextArea) {
-                String content = ((JTextArea)component).getText();
-                if (content != null && content.toLowerCase().contains(text.toLowerCase())) {
-                    return (JTextArea)component;
-                }
-            }
+        String lowerText = text.toLowerCase();
+        for (JTextArea textArea : ComponentIndex.forContainer(container).getComponents(JTextArea.class)) {
+            String content = textArea.getText();
+            if (content != null && content.toLowerCase().contains(lowerText)) return textArea;
         }
         return null;
     }
 
     static String getLabelTexts(Container container) {
-        ComponentIterator iter = new ComponentIterator(container);
         String s = "";
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JLabel) {
-                String content = ((JLabel)component).getText();
-                if (content != null) {
-                    if (s.length() != 0) s += NEWLINE;
-                    s += content;
-                }
+        for (JLabel label : ComponentIndex.forContainer(container).getComponents(JLabel.class)) {
+            String content = label.getText();
+            if (content != null) {
+                if (s.length() != 0) s += NEWLINE;
+                s += content;
             }
         }
         return s;
     }
 
     static String getTexts(Container container) {
-        ComponentIterator iter = new ComponentIterator(container);
         String s = "";
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JTextArea) {
-                String content = ((JTextArea)component).getText();
-                if (content != null) {
-                    if (s.length() != 0) s += NEWLINE;
-                    s += content;
-                }
+        for (JTextArea textArea : ComponentIndex.forContainer(container).getComponents(JTextArea.class)) {
+            String content = textArea.getText();
+            if (content != null) {
+                if (s.length() != 0) s += NEWLINE;
+                s += content;
             }
         }
         return s;
@@ -287,13 +241,7 @@ class SwingUtils {
      *  the required JTextField if it is found, otherwise null
      */
     static JTextField findTextField(Container container, int ith) {
-        ComponentIterator iter = new ComponentIterator(container);
-        int i = 0;
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JTextField && i++ == ith) return (JTextField)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JTextField.class, ith);
     }
 
     /**
@@ -307,15 +255,10 @@ class SwingUtils {
      *  the JTextArea, if it was found;  otherwise null
      */
     static JTextPane findTextPane(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JTextPane) {
-                String content = ((JTextPane)component).getText();
-                if (content != null && content.toLowerCase().contains(text.toLowerCase())) {
-                    return (JTextPane)component;
-                }
-            }
+        String lowerText = text.toLowerCase();
+        for (JTextPane textPane : ComponentIndex.forContainer(container).getComponents(JTextPane.class)) {
+            String content = textPane.getText();
+            if (content != null && content.toLowerCase().contains(lowerText)) return textPane;
         }
         return null;
     }
@@ -331,12 +274,7 @@ class SwingUtils {
      *  the radio button, if it was found;  otherwise null
      */
     static JToggleButton findToggleButton(Container container, String text) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JToggleButton && text.equalsIgnoreCase(((JToggleButton)component).getText())) return (JToggleButton)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).findByText(JToggleButton.class, text);
     }
 
     /**
@@ -348,12 +286,7 @@ class SwingUtils {
      * the first JMenuBar found, if any; otherwise null
      */
     static JMenuBar findMenuBar(Container container) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JMenuBar) return (JMenuBar)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JMenuBar.class, 0);
     }
 
     /**
@@ -369,13 +302,7 @@ class SwingUtils {
      *  the required JMenuBar if it is found, otherwise null
      */
     static JMenuBar findMenuBar(Container container, int ith) {
-        ComponentIterator iter = new ComponentIterator(container);
-        int i = 0;
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JMenuBar && i++ == ith) return (JMenuBar)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JMenuBar.class, ith);
     }
 
     /**
@@ -486,12 +413,7 @@ class SwingUtils {
      *  the first JOptionPane, if one was found;  otherwise null
      */
     static JOptionPane findOptionPane(Container container) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JOptionPane) return (JOptionPane)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JOptionPane.class, 0);
     }
 
     /**
@@ -503,12 +425,7 @@ class SwingUtils {
      *  the first JTree, if one was found;  otherwise null
      */
     static JTree findTree(Container container) {
-        ComponentIterator iter = new ComponentIterator(container);
-        while (iter.hasNext()) {
-            Component component = iter.next();
-            if (component instanceof JTree) return (JTree)component;
-        }
-        return null;
+        return ComponentIndex.forContainer(container).find(JTree.class, 0);
     }
 
     /**
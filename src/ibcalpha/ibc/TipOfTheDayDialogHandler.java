@@ -33,6 +33,10 @@ class TipOfTheDayDialogHandler implements WindowHandler {
         }
     }
 
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+    }
+
     public void handleWindow(Window window, int eventID) {
         if (! SwingUtils.clickButton(window, "Close")) {
             Utils.logError("could not dismiss Tip of the Day because we could not find one of the controls.");
@@ -44,4 +48,9 @@ class TipOfTheDayDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, "Tip of the Day"));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining("Tip of the Day");
+    }
 }
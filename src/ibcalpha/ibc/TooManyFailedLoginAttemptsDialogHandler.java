@@ -37,6 +37,11 @@ public class TooManyFailedLoginAttemptsDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         // this dialog will contain a text area with a message like this:
@@ -84,4 +89,9 @@ public class TooManyFailedLoginAttemptsDialogHandler implements WindowHandler {
         return (SwingUtils.findTextArea(window, "Too many failed login attempts") != null);
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTextAreaContaining("Too many failed login attempts");
+    }
+
 }
@@ -44,6 +44,11 @@ public class TradesFrameHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSING, WindowEvent.WINDOW_CLOSED};
+    }
+
     @Override
     public void handleWindow(final Window window, int eventID) {
         if (!firstTradesWindowOpened) {
@@ -113,6 +118,11 @@ public class TradesFrameHandler implements WindowHandler {
         return (SwingUtils.titleContains(window, "Trades"));
     }
 
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.frames().withTitleContaining("Trades");
+    }
+
     private void monitorAllTradesCheckbox(Window window, String text) {
         final JCheckBox check = SwingUtils.findCheckBox(window, text);
         if (check != null) check.addChangeListener(new ChangeListener() {
@@ -57,6 +57,11 @@ public class TradingLoginHandoffDialogHandler implements WindowHandler {
         }
     }
 
+    @Override
+    public int[] getEventIds() {
+        return new int[] {WindowEvent.WINDOW_OPENED};
+    }
+
     @Override
     public void handleWindow(Window window, int eventID) {
         final String MESSAGE_STUB = DIALOG_TITLE + " dialog; ";
@@ -88,4 +93,9 @@ public class TradingLoginHandoffDialogHandler implements WindowHandler {
 
         return (SwingUtils.titleContains(window, DIALOG_TITLE));
     }
+
+    @Override
+    public WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.dialogs().withTitleContaining(DIALOG_TITLE);
+    }
 }
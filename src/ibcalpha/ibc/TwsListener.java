@@ -29,14 +29,22 @@ import javax.swing.JFrame;
 class TwsListener
         implements AWTEventListener {
 
-    private final List<WindowHandler> windowHandlers;
+    private final WindowHandlerIndex windowHandlerIndex;
+
+    private final WindowRecognitionCache recognitionCache = new WindowRecognitionCache();
+
+    private final boolean[] subscribedEvents = new boolean[WindowEvent.WINDOW_LAST - WindowEvent.WINDOW_FIRST + 1];
 
     private static String logStructureScope;
     private static String logStructureWhen;
 
     TwsListener (List<WindowHandler> windowHandlers) {
-        this.windowHandlers = windowHandlers;
+        windowHandlerIndex = new WindowHandlerIndex(windowHandlers);
         getLogStructureParameters();
+
+        for (WindowHandler wh : windowHandlers) subscribe(wh.getEventIds());
+        subscribe(getLogStructureEventIds());
+        logSubscribedEvents();
     }
 
     @Override
@@ -44,19 +52,23 @@ class TwsListener
         try {
             final int eventID = event.getID();
 
+            // no handler is interested in this event, so don't bother the
+            // event dispatch thread with it
+            if (!isSubscribed(eventID)) return;
+
             final Window window;
             window = ((WindowEvent) event).getWindow();
 
             GuiDeferredExecutor.instance().execute(() -> {
                 try{
-                    logWindow(window, eventID);
-
-                    for (WindowHandler wh : windowHandlers) {
-                        if (wh.recogniseWindow(window))  {
-                                logWindowStructure(window, eventID, true);
-                                if (wh.filterEvent(window, eventID)) wh.handleWindow(window, eventID);
-                            return;
-                        }
+                    IbcMetrics.getInstance().windowEvents.increment(SwingUtils.windowEventToString(eventID));
+                    WindowHandler wh = getHandler(window, eventID);
+                    logWindow(window, eventID, wh);
+                    publishWindowEvent(window, eventID, wh);
+                    if (wh != null) {
+                        logWindowStructure(window, eventID, true);
+                        if (wh.filterEvent(window, eventID)) wh.handleWindow(window, eventID);
+                        return;
                     }
 
                     logWindowStructure(window, eventID, false);
@@ -69,6 +81,73 @@ class TwsListener
         }
     }
     
+    private WindowHandler getHandler(Window window, int eventID) {
+        // a window that is being opened (perhaps not for the first time) is
+        // always recognised afresh
+        boolean known = eventID != WindowEvent.WINDOW_OPENED && recognitionCache.contains(window);
+        WindowHandler wh = known ? recognitionCache.get(window) : windowHandlerIndex.findHandler(window);
+        if (!known) IbcMetrics.getInstance().windowRecognitions.increment(wh == null ? "unknown" : wh.getClass().getSimpleName());
+
+        // no need to keep watching a closed window: if it's reopened, it will
+        // be recognised again
+        if (eventID == WindowEvent.WINDOW_CLOSED) {
+            recognitionCache.remove(window);
+        } else if (!known) {
+            recognitionCache.put(window, wh);
+        }
+        return wh;
+    }
+
+    private static void publishWindowEvent(Window window, int eventID, WindowHandler wh) {
+        if (eventID != WindowEvent.WINDOW_OPENED && eventID != WindowEvent.WINDOW_CLOSED) return;
+        IbcEvents.getInstance().publish(IbcEvents.WINDOW,
+                                        SwingUtils.windowEventToString(eventID) + " " +
+                                        (wh == null ? "unknown" : wh.getClass().getSimpleName()) + " " +
+                                        getWindowTypeAndTitle(window));
+    }
+
+    private void subscribe(int[] eventIds) {
+        for (int eventID : eventIds) {
+            if (eventID >= WindowEvent.WINDOW_FIRST && eventID <= WindowEvent.WINDOW_LAST) {
+                subscribedEvents[eventID - WindowEvent.WINDOW_FIRST] = true;
+            }
+        }
+    }
+
+    private boolean isSubscribed(int eventID) {
+        if (eventID < WindowEvent.WINDOW_FIRST || eventID > WindowEvent.WINDOW_LAST) return false;
+        return subscribedEvents[eventID - WindowEvent.WINDOW_FIRST];
+    }
+
+    private void logSubscribedEvents() {
+        String s = "";
+        for (int i = 0; i < subscribedEvents.length; i++) {
+            if (!subscribedEvents[i]) continue;
+            if (s.length() != 0) s += ", ";
+            s += SwingUtils.windowEventToString(WindowEvent.WINDOW_FIRST + i);
+        }
+        Utils.logToConsole("Window events monitored: " + s);
+    }
+
+    private static int[] getLogStructureEventIds() {
+        switch (logStructureWhen) {
+            case "never":
+                return new int[0];
+            case "open":
+                return new int[] {WindowEvent.WINDOW_OPENED};
+            case "activate":
+                return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_ACTIVATED};
+            case "openclose":
+                return new int[] {WindowEvent.WINDOW_OPENED, WindowEvent.WINDOW_CLOSED};
+            default:
+                // a window event name
+                for (int eventID = WindowEvent.WINDOW_FIRST; eventID <= WindowEvent.WINDOW_LAST; eventID++) {
+                    if (logStructureWhen.equalsIgnoreCase(SwingUtils.windowEventToString(eventID))) return new int[] {eventID};
+                }
+                return new int[0];
+        }
+    }
+
     private static void getLogStructureParameters() {
         // legacy deprecated setting overrides explicit values of LogStructureScope 
         // and LogStructureWhen
@@ -143,7 +222,20 @@ class TwsListener
     }
 
     static void logWindow(Window window, int eventID) {
-        Utils.logToConsole("detected " + getWindowTypeAndTitle(window) + "; event=" + SwingUtils.windowEventToString(eventID));
+        logWindow(window, eventID, null);
+    }
+
+    private static void logWindow(Window window, int eventID, WindowHandler wh) {
+        // opening and closing are always of interest, but other events (such as
+        // activation) are very frequent and only needed when investigating problems
+        LogLevel level = (eventID == WindowEvent.WINDOW_OPENED || eventID == WindowEvent.WINDOW_CLOSED) ? LogLevel.INFO : LogLevel.DEBUG;
+        if (!Utils.isLogEnabled(level, LogLevels.WINDOW)) return;
+
+        String eventName = SwingUtils.windowEventToString(eventID);
+        Utils.logEvent(new LogEvent(level, LogLevels.WINDOW, "window" + eventName.replace(" ", ""))
+                            .window(SwingUtils.getWindowTitle(window))
+                            .handler(wh == null ? null : wh.getClass().getSimpleName())
+                            .message("detected " + getWindowTypeAndTitle(window) + "; event=" + eventName));
     }
 
     private static String getWindowTypeAndTitle(Window window) {
@@ -0,0 +1,125 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+/**
+ * Creates Unix domain server sockets for the command server.
+ *
+ * Unix domain socket channels are only available from Java 16, whereas IBC
+ * must still run on Java 8, so the relevant classes and methods are accessed
+ * by reflection. On earlier Java versions, open() fails with a suitable
+ * message.
+ */
+class UnixDomainSockets {
+
+    private UnixDomainSockets() {}
+
+    /**
+     * Opens a non-blocking server channel listening on a Unix domain socket
+     * at the specified path, which only the current user can connect to.
+     *
+     * If a file other than a regular file or directory already exists at the
+     * path, it is assumed to be a socket left behind by an earlier run, and
+     * is replaced.
+     */
+    static ServerSocketChannel open(String path, int backlog) throws IOException {
+        final Path socketPath = Paths.get(path);
+        if (Files.isRegularFile(socketPath) || Files.isDirectory(socketPath)) {
+            throw new IOException("cannot create Unix domain socket: " + path + " already exists and is not a socket");
+        }
+        Files.deleteIfExists(socketPath);
+
+        final ServerSocketChannel channel = openChannel();
+        try {
+            channel.bind(createAddress(path), backlog);
+            channel.configureBlocking(false);
+            restrictToOwner(socketPath);
+
+            // anyone who managed to connect before the permissions were set
+            // is disconnected
+            SocketChannel early;
+            while ((early = channel.accept()) != null) early.close();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(socketPath);
+            throw e;
+        }
+        return channel;
+    }
+
+    static void delete(String path) {
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (IOException e) {
+            Utils.logException(e);
+        }
+    }
+
+    private static ServerSocketChannel openChannel() throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+        } catch (IllegalArgumentException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IOException("Unix domain sockets require Java 16 or later (this is Java " + System.getProperty("java.version") + ")");
+        } catch (InvocationTargetException e) {
+            throw asIOException(e);
+        }
+    }
+
+    private static SocketAddress createAddress(String path) throws IOException {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) addressClass.getMethod("of", String.class).invoke(null, path);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IOException("Unix domain sockets require Java 16 or later (this is Java " + System.getProperty("java.version") + ")");
+        } catch (InvocationTargetException e) {
+            throw asIOException(e);
+        }
+    }
+
+    private static void restrictToOwner(Path socketPath) throws IOException {
+        try {
+            Files.setPosixFilePermissions(socketPath, EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        } catch (UnsupportedOperationException e) {
+            // eg on Windows, where access is governed by the directory's ACL
+            Utils.logToConsole("CommandServer: cannot set permissions on " + socketPath + ": access depends on the permissions of its directory");
+        }
+    }
+
+    private static IOException asIOException(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) return (IOException) cause;
+        return new IOException(cause);
+    }
+
+}
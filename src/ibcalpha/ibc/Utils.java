@@ -19,11 +19,16 @@
 package ibcalpha.ibc;
 
 import java.awt.Container;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.PrintStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.swing.JDialog;
 import javax.swing.JMenuItem;
 import javax.swing.JTree;
@@ -41,6 +46,8 @@ class Utils {
 
     private static boolean sendConsoleOutputToTwsLog = false;
 
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+
     /**
      * Performs a click on the menu item at the specified path, waiting if necessary for the
      * menu item to become enabled.
@@ -61,13 +68,17 @@ class Utils {
     static boolean invokeMenuItem(final Container container, final String[] path) throws IllegalStateException {
         if (SwingUtilities.isEventDispatchThread()) throw new IllegalStateException("Function must not be called on the event dispatch thread, as it may block the thread");
         while (true) {
+            final EnablementWaiter waiter = new EnablementWaiter();
             FutureTask<Boolean> task = new FutureTask<>(() -> {
                 String s = path[0];
                 for (int i = 1; i < path.length; i++) s = s + " > " + path[i];
 
-                JMenuItem menuItem = SwingUtils.findMenuItemInAnyMenuBar(container, path);
+                JMenuItem menuItem = MenuItemCache.findMenuItem(container, path);
                 if (menuItem == null) throw new IbcException("menu item: " + s);
-                if (!menuItem.isEnabled()) return false;
+                if (!menuItem.isEnabled()) {
+                    waiter.watch(menuItem);
+                    return false;
+                }
                 menuItem.doClick();
                 return true;
             });
@@ -88,12 +99,54 @@ class Utils {
                 if (t instanceof Error) throw (Error)t;
             }
 
-            pause(250);
+            try {
+                waiter.await();
+            } catch (InterruptedException e) {
+                logError("invokeMenuItem task interrupted");
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Waits for a disabled menu item to become enabled, by listening for
+     * changes to its 'enabled' property.
+     * 
+     * In case the menu item is replaced by another rather than being enabled,
+     * the wait ends anyway after MENU_ITEM_RECHECK_MILLIS, so that the
+     * caller can look for the menu item again.
+     */
+    private static class EnablementWaiter implements PropertyChangeListener {
+        private static final int MENU_ITEM_RECHECK_MILLIS = 5000;
+
+        private final CountDownLatch enabled = new CountDownLatch(1);
+        private volatile JMenuItem menuItem;
+
+        // called on the event dispatch thread
+        void watch(JMenuItem menuItem) {
+            this.menuItem = menuItem;
+            menuItem.addPropertyChangeListener("enabled", this);
+            if (menuItem.isEnabled()) enabled.countDown();
+        }
+
+        void await() throws InterruptedException {
+            try {
+                enabled.await(MENU_ITEM_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } finally {
+                final JMenuItem item = menuItem;
+                if (item != null) GuiDeferredExecutor.instance().execute(() -> item.removePropertyChangeListener("enabled", this));
+            }
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (Boolean.TRUE.equals(evt.getNewValue())) enabled.countDown();
         }
     }
 
     static void exitWithError(int errorCode) {
         logToConsole("Exiting with exit code=" + errorCode);
+        flushLog();
         System.exit(errorCode);
     }
 
@@ -108,20 +161,60 @@ class Utils {
     }
 
     static void exitWithoutError() {
+        flushLog();
         System.exit(0);
     }
 
     static void logError(String message) {
-        getErrStream().println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        getErrStream().println(formatMessage(message));
-        getErrStream().println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        IbcStatus.getInstance().setLastError(message);
+        int repeated = LogRateLimiter.getInstance().admit(message, true, message);
+        if (repeated < 0) return;
+        if (repeated > 0) logRepeated(true, LogRateLimiter.repeatedMessage(message, repeated));
+        AsyncLogger.getInstance().log(getErrStream(), AsyncLogger.ERROR, message, null);
     }
 
     static void logException(Throwable t) {
-        getErrStream().println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        getErrStream().println(formatMessage("An exception has occurred:"));
-        t.printStackTrace(getErrStream());
-        getErrStream().println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        StackTraceElement[] stackTrace = t.getStackTrace();
+        String key = t.toString() + (stackTrace.length == 0 ? "" : " at " + stackTrace[0]);
+        int repeated = LogRateLimiter.getInstance().admit(key, true, "An exception has occurred: " + key);
+        if (repeated < 0) return;
+        if (repeated > 0) logRepeated(true, LogRateLimiter.repeatedMessage("An exception has occurred: " + key, repeated));
+        AsyncLogger.getInstance().log(getErrStream(), AsyncLogger.EXCEPTION, null, t);
+    }
+
+    /**
+     * Writes a text message prefixed with the current time to the console,
+     * unless the same message has already been written too often recently
+     * (see LogRateLimiter). This is intended for warnings that may be
+     * repeated many times, such as those about invalid settings.
+     * @param msg
+     * The message to be written
+     */
+    static void logToConsoleLimited(String msg) {
+        int repeated = LogRateLimiter.getInstance().admit(msg, false, msg);
+        if (repeated < 0) return;
+        if (repeated > 0) logRepeated(false, LogRateLimiter.repeatedMessage(msg, repeated));
+        logToConsole(msg);
+    }
+
+    /*
+     * Reports a message that was not logged because of rate limiting
+     */
+    static void logRepeated(boolean isError, String msg) {
+        if (isError) {
+            AsyncLogger.getInstance().log(getErrStream(), AsyncLogger.ERROR, msg, null);
+        } else if (LogLevels.getInstance().isEnabled(LogLevel.INFO, null)) {
+            AsyncLogger.getInstance().log(getOutStream(), AsyncLogger.MESSAGE, msg, null);
+        }
+    }
+
+    /**
+     * Writes the stack trace of the specified Throwable to the console.
+     * @param t
+     * The Throwable whose stack trace is to be written
+     */
+    static void logStackTrace(Throwable t) {
+        AsyncLogger.getInstance().log(getErrStream(), AsyncLogger.STACK_TRACE, null, t);
     }
 
     /**
@@ -130,7 +223,7 @@ class Utils {
      * The message to be written
      */
     static void logRawToConsole(String msg) {
-        getOutStream().println(msg);
+        AsyncLogger.getInstance().log(getOutStream(), AsyncLogger.RAW, msg, null);
     }
 
     /**
@@ -139,7 +232,64 @@ class Utils {
      * The message to be written
      */
     static void logToConsole(String msg) {
-        getOutStream().println(formatMessage(msg));
+        if (!LogLevels.getInstance().isEnabled(LogLevel.INFO, null)) return;
+        AsyncLogger.getInstance().log(getOutStream(), AsyncLogger.MESSAGE, msg, null);
+    }
+
+    /**
+     * Writes a text message prefixed with the current time to the console,
+     * provided that messages at the specified level are enabled for the
+     * specified subsystem.
+     * 
+     * The message is only built if it is to be written, so there is no need
+     * to check whether it is enabled first.
+     * @param level
+     * The level of the message
+     * @param subsystem
+     * The subsystem the message relates to (one of the constants in LogLevels),
+     * or null if it doesn't relate to a particular subsystem
+     * @param msg
+     * Supplies the message to be written
+     */
+    static void log(LogLevel level, String subsystem, Supplier<String> msg) {
+        if (level == LogLevel.ERROR) {
+            logError(msg.get());
+        } else if (LogLevels.getInstance().isEnabled(level, subsystem)) {
+            AsyncLogger.getInstance().log(getOutStream(), level, subsystem, msg.get());
+        }
+    }
+
+    /**
+     * Logs a record with structured fields, provided that its level is
+     * enabled for its subsystem.
+     * @param event
+     * The record to be logged
+     */
+    static void logEvent(LogEvent event) {
+        if (!LogLevels.getInstance().isEnabled(event.level, event.subsystem)) return;
+        AsyncLogger.getInstance().logEvent(event.level == LogLevel.ERROR ? getErrStream() : getOutStream(), event);
+    }
+
+    static void logToConsole(Supplier<String> msg) {
+        log(LogLevel.INFO, null, msg);
+    }
+
+    static void logDebug(String subsystem, Supplier<String> msg) {
+        log(LogLevel.DEBUG, subsystem, msg);
+    }
+
+    static boolean isLogEnabled(LogLevel level, String subsystem) {
+        return LogLevels.getInstance().isEnabled(level, subsystem);
+    }
+
+    /**
+     * Waits (for a short time at most) until all messages logged so far have
+     * been written. Note that messages are written on a separate thread, so
+     * this should be called before anything that may end the process without
+     * running the shutdown hooks.
+     */
+    static void flushLog() {
+        AsyncLogger.getInstance().flush(FLUSH_TIMEOUT_MILLIS);
     }
 
     static PrintStream getErrStream() {
@@ -161,10 +311,6 @@ class Utils {
     static String formatDate(LocalDateTime date) {
         return _dateFormatter.format(date);
     }
-    
-    private static String formatMessage(String message) {
-        return _dateFormatter.format(LocalDateTime.now()) + " IBC: " + message;
-    }
 
     /**
      * sleeps for millis milliseconds, approximately.
@@ -209,6 +355,10 @@ class Utils {
             tp = tp.pathByAddingChild(node);
         }
 
+        // avoid redisplaying the section if it's already selected, for example
+        // by a previous action in the same ConfigurationTransaction
+        if (tp.equals(configTree.getSelectionPath())) return true;
+
         configTree.setExpandsSelectedPaths(true);
         configTree.setSelectionPath(tp);
         return true;
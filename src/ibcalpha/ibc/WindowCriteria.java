@@ -0,0 +1,132 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the conditions that a window must satisfy before a WindowHandler's
+ * recogniseWindow method is worth calling.
+ *
+ * The criteria are compiled by WindowHandlerIndex into an index that enables
+ * TwsListener to find the plausible handlers for a window without asking every
+ * handler in turn. They are a pre-filter only: a handler's recogniseWindow
+ * method remains the final arbiter, so the criteria must never be stricter
+ * than the checks that method makes.
+ *
+ * Title conditions are satisfied if the window's title (ignoring case) equals
+ * any of the titles specified via withTitle, or contains any of the strings
+ * specified via withTitleContaining. Content conditions are cumulative: every
+ * specified label, text area and text pane string must be present.
+ */
+class WindowCriteria {
+
+    static final int FRAMES = 1;
+    static final int DIALOGS = 2;
+    static final int OTHER_WINDOWS = 4;
+    static final int ALL_WINDOWS = FRAMES | DIALOGS | OTHER_WINDOWS;
+
+    private final int windowTypes;
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> titleFragments = new ArrayList<>();
+    private final List<String> labelTexts = new ArrayList<>();
+    private final List<String> textAreaTexts = new ArrayList<>();
+    private final List<String> textPaneTexts = new ArrayList<>();
+
+    private WindowCriteria(int windowTypes) {
+        this.windowTypes = windowTypes;
+    }
+
+    static WindowCriteria anyWindow() {
+        return new WindowCriteria(ALL_WINDOWS);
+    }
+
+    static WindowCriteria dialogs() {
+        return new WindowCriteria(DIALOGS);
+    }
+
+    static WindowCriteria frames() {
+        return new WindowCriteria(FRAMES);
+    }
+
+    static WindowCriteria dialogsAndFrames() {
+        return new WindowCriteria(DIALOGS | FRAMES);
+    }
+
+    WindowCriteria withTitle(String... titles) {
+        for (String title : titles) this.titles.add(title.toLowerCase());
+        return this;
+    }
+
+    WindowCriteria withTitleContaining(String... fragments) {
+        for (String fragment : fragments) titleFragments.add(fragment.toLowerCase());
+        return this;
+    }
+
+    WindowCriteria withLabelContaining(String text) {
+        labelTexts.add(text.toLowerCase());
+        return this;
+    }
+
+    WindowCriteria withTextAreaContaining(String text) {
+        textAreaTexts.add(text.toLowerCase());
+        return this;
+    }
+
+    WindowCriteria withTextPaneContaining(String text) {
+        textPaneTexts.add(text.toLowerCase());
+        return this;
+    }
+
+    int getWindowTypes() {
+        return windowTypes;
+    }
+
+    List<String> getTitles() {
+        return Collections.unmodifiableList(titles);
+    }
+
+    List<String> getTitleFragments() {
+        return Collections.unmodifiableList(titleFragments);
+    }
+
+    boolean hasTitleConditions() {
+        return !titles.isEmpty() || !titleFragments.isEmpty();
+    }
+
+    boolean hasContentConditions() {
+        return !labelTexts.isEmpty() || !textAreaTexts.isEmpty() || !textPaneTexts.isEmpty();
+    }
+
+    List<String> getLabelTexts() {
+        return Collections.unmodifiableList(labelTexts);
+    }
+
+    List<String> getTextAreaTexts() {
+        return Collections.unmodifiableList(textAreaTexts);
+    }
+
+    List<String> getTextPaneTexts() {
+        return Collections.unmodifiableList(textPaneTexts);
+    }
+
+}
@@ -19,9 +19,39 @@
 package ibcalpha.ibc;
 
 import java.awt.Window;
+import java.awt.event.WindowEvent;
 
 interface WindowHandler {
     boolean filterEvent(Window window, int eventId);
     void handleWindow(Window window, int eventID);
     boolean recogniseWindow(Window window);
+
+    /**
+     * Returns the conditions that a window must meet before recogniseWindow
+     * need be called for it. These allow TwsListener to skip handlers that
+     * cannot possibly recognise a particular window.
+     *
+     * The default is to consider every window.
+     * @return
+     * the handler's recognition criteria
+     */
+    default WindowCriteria getRecognitionCriteria() {
+        return WindowCriteria.anyWindow();
+    }
+
+    /**
+     * Returns the IDs of the window events that this handler's filterEvent
+     * method may accept. TwsListener discards any window event that no
+     * handler (nor the structure logging) has asked for, before it is passed
+     * to the Swing event dispatch thread.
+     *
+     * The default is every window event.
+     * @return
+     * the IDs of the required window events
+     */
+    default int[] getEventIds() {
+        int[] eventIds = new int[WindowEvent.WINDOW_LAST - WindowEvent.WINDOW_FIRST + 1];
+        for (int i = 0; i < eventIds.length; i++) eventIds[i] = WindowEvent.WINDOW_FIRST + i;
+        return eventIds;
+    }
 }
@@ -0,0 +1,245 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JTextArea;
+import javax.swing.JTextPane;
+
+/**
+ * Finds the WindowHandler (if any) that recognises a window, without calling
+ * every handler's recogniseWindow method.
+ *
+ * Each handler's WindowCriteria are compiled into a separate index for frames,
+ * dialogs and other windows. Within each of these, handlers that have title
+ * conditions are held in a trie keyed on the (lower case) title text, so the
+ * candidates for a particular title are found with a single pass over the
+ * title. Handlers without title conditions are candidates for every window of
+ * the relevant type.
+ *
+ * The content conditions of all the candidates are then checked against a
+ * single snapshot of the window's labels, text areas and text panes, so that
+ * at most one traversal of the window's components is made before the
+ * surviving candidates' recogniseWindow methods are called.
+ *
+ * Candidates are always tried in the order in which the handlers were
+ * supplied, so the first handler to recognise the window wins, exactly as
+ * when every handler was asked in turn.
+ */
+class WindowHandlerIndex {
+
+    private final WindowHandler[] handlers;
+    private final WindowCriteria[] criteria;
+
+    private final Bucket frames = new Bucket();
+    private final Bucket dialogs = new Bucket();
+    private final Bucket otherWindows = new Bucket();
+
+    WindowHandlerIndex(List<WindowHandler> windowHandlers) {
+        handlers = windowHandlers.toArray(new WindowHandler[windowHandlers.size()]);
+        criteria = new WindowCriteria[handlers.length];
+
+        for (int i = 0; i < handlers.length; i++) {
+            criteria[i] = handlers[i].getRecognitionCriteria();
+            if (criteria[i] == null) criteria[i] = WindowCriteria.anyWindow();
+
+            int windowTypes = criteria[i].getWindowTypes();
+            if ((windowTypes & WindowCriteria.FRAMES) != 0) frames.add(i, criteria[i]);
+            if ((windowTypes & WindowCriteria.DIALOGS) != 0) dialogs.add(i, criteria[i]);
+            if ((windowTypes & WindowCriteria.OTHER_WINDOWS) != 0) otherWindows.add(i, criteria[i]);
+        }
+    }
+
+    /**
+     * Returns the first handler that recognises the specified window.
+     *
+     * Must be called on the Swing event dispatch thread.
+     * @param window
+     * the window to be recognised
+     * @return
+     * the handler that recognises the window, or null if no handler does so
+     */
+    WindowHandler findHandler(Window window) {
+        BitSet candidates = bucketFor(window).getCandidates(SwingUtils.getWindowTitle(window).toLowerCase());
+
+        WindowContent content = null;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (criteria[i].hasContentConditions()) {
+                if (content == null) content = new WindowContent(window);
+                if (!content.satisfies(criteria[i])) continue;
+            }
+            if (handlers[i].recogniseWindow(window)) return handlers[i];
+        }
+        return null;
+    }
+
+    private Bucket bucketFor(Window window) {
+        if (window instanceof JFrame) return frames;
+        if (window instanceof JDialog) return dialogs;
+        return otherWindows;
+    }
+
+    private static class Bucket {
+        private final BitSet untitledHandlers = new BitSet();
+        private final TitleTrie titleTrie = new TitleTrie();
+
+        void add(int handlerIndex, WindowCriteria windowCriteria) {
+            if (!windowCriteria.hasTitleConditions()) {
+                untitledHandlers.set(handlerIndex);
+                return;
+            }
+            for (String title : windowCriteria.getTitles()) titleTrie.addTitle(title, handlerIndex);
+            for (String fragment : windowCriteria.getTitleFragments()) titleTrie.addFragment(fragment, handlerIndex);
+        }
+
+        BitSet getCandidates(String title) {
+            BitSet candidates = (BitSet) untitledHandlers.clone();
+            titleTrie.collectMatches(title, candidates);
+            return candidates;
+        }
+    }
+
+    private static class TitleTrie {
+        private final Node root = new Node();
+
+        void addTitle(String title, int handlerIndex) {
+            Node node = getOrCreateNode(title);
+            if (node.titleMatches == null) node.titleMatches = new BitSet();
+            node.titleMatches.set(handlerIndex);
+        }
+
+        void addFragment(String fragment, int handlerIndex) {
+            Node node = getOrCreateNode(fragment);
+            if (node.fragmentMatches == null) node.fragmentMatches = new BitSet();
+            node.fragmentMatches.set(handlerIndex);
+        }
+
+        /*
+         * Adds to matches every handler whose title equals the supplied title
+         * or whose title fragment occurs anywhere within it.
+         */
+        void collectMatches(String title, BitSet matches) {
+            int length = title.length();
+            if (length == 0) {
+                if (root.titleMatches != null) matches.or(root.titleMatches);
+                if (root.fragmentMatches != null) matches.or(root.fragmentMatches);
+                return;
+            }
+            if (root.fragmentMatches != null) matches.or(root.fragmentMatches);
+            for (int start = 0; start < length; start++) {
+                Node node = root;
+                for (int i = start; i < length; i++) {
+                    node = node.getChild(title.charAt(i));
+                    if (node == null) break;
+                    if (node.fragmentMatches != null) matches.or(node.fragmentMatches);
+                    if (start == 0 && i == length - 1 && node.titleMatches != null) matches.or(node.titleMatches);
+                }
+            }
+        }
+
+        private Node getOrCreateNode(String key) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.getOrCreateChild(key.charAt(i));
+            }
+            return node;
+        }
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        BitSet titleMatches;
+        BitSet fragmentMatches;
+
+        Node getChild(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        Node getOrCreateChild(char c) {
+            Node child = getChild(c);
+            if (child != null) return child;
+
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            child = new Node();
+            newKeys[keys.length] = c;
+            newChildren[children.length] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    /*
+     * The (lower case) texts of a window's labels, text areas and text panes,
+     * gathered in a single traversal of the window's components.
+     */
+    private static class WindowContent {
+        private final List<String> labelTexts = new ArrayList<>();
+        private final List<String> textAreaTexts = new ArrayList<>();
+        private final List<String> textPaneTexts = new ArrayList<>();
+
+        WindowContent(Window window) {
+            // the index is cached on the window, so a handler's subsequent
+            // SwingUtils.find* calls don't walk the window again
+            ComponentIndex index = ComponentIndex.forContainer(window);
+            for (JLabel label : index.getComponents(JLabel.class)) addText(labelTexts, label.getText());
+            for (JTextPane textPane : index.getComponents(JTextPane.class)) addText(textPaneTexts, textPane.getText());
+            for (JTextArea textArea : index.getComponents(JTextArea.class)) addText(textAreaTexts, textArea.getText());
+        }
+
+        boolean satisfies(WindowCriteria windowCriteria) {
+            return containsAll(labelTexts, windowCriteria.getLabelTexts()) &&
+                    containsAll(textAreaTexts, windowCriteria.getTextAreaTexts()) &&
+                    containsAll(textPaneTexts, windowCriteria.getTextPaneTexts());
+        }
+
+        private static void addText(List<String> texts, String text) {
+            if (text != null) texts.add(text.toLowerCase());
+        }
+
+        private static boolean containsAll(List<String> texts, List<String> requiredTexts) {
+            for (String required : requiredTexts) {
+                boolean found = false;
+                for (String text : texts) {
+                    if (text.contains(required)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+    }
+
+}
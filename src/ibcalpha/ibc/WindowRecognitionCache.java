@@ -0,0 +1,136 @@
+// This file is part of IBC.
+// Copyright (C) 2004 Steven M. Kearns (skearns23@yahoo.com )
+// Copyright (C) 2004 - 2018 Richard L King (rlking@aultan.com)
+// For conditions of distribution and use, see copyright notice in COPYING.txt
+
+// IBC is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// IBC is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with IBC.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package ibcalpha.ibc;
+
+import java.awt.Window;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Remembers which WindowHandler (if any) recognised each window, so that
+ * further events for a long-lived window such as the main window or the Trades
+ * log do not repeat the recognition process.
+ *
+ * Windows are held weakly, so an entry disappears once its window has been
+ * garbage collected.
+ *
+ * An entry is discarded if the window's title changes, or if a component is
+ * added to or removed from any container within the window: this ensures that
+ * a window whose content is changed in place (for example the login frame
+ * turning into the second factor authentication dialog) is recognised afresh.
+ */
+class WindowRecognitionCache {
+
+    private final Map<Window, Entry> entries = new WeakHashMap<>();
+
+    /**
+     * Indicates whether the specified window has been recognised since it was
+     * last changed.
+     */
+    synchronized boolean contains(Window window) {
+        return entries.containsKey(window);
+    }
+
+    /**
+     * Returns the handler that recognised the specified window, or null if no
+     * handler recognised it (or it has not yet been recognised: use contains()
+     * to distinguish these).
+     */
+    synchronized WindowHandler get(Window window) {
+        Entry entry = entries.get(window);
+        return (entry == null) ? null : entry.handler;
+    }
+
+    /**
+     * Records the handler (which may be null) that recognised the specified
+     * window.
+     *
+     * Must be called on the Swing event dispatch thread.
+     */
+    void put(Window window, WindowHandler handler) {
+        remove(window);
+
+        Entry entry = new Entry(window, handler);
+        synchronized (this) {
+            entries.put(window, entry);
+        }
+        entry.attach(window);
+    }
+
+    /**
+     * Discards any record of the handler that recognised the specified window.
+     */
+    void remove(Window window) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(window);
+        }
+        if (entry != null) entry.detach(window);
+    }
+
+    private void invalidate(Entry entry) {
+        Window window = entry.window.get();
+        if (window == null) return;
+        synchronized (this) {
+            // the entry may already have been replaced or discarded
+            if (entries.get(window) != entry) return;
+            entries.remove(window);
+        }
+        entry.detach(window);
+    }
+
+    private class Entry extends ComponentTreeWatcher implements PropertyChangeListener {
+
+        // must not hold a strong reference to the window, or the map could
+        // never discard it
+        final WeakReference<Window> window;
+        final WindowHandler handler;
+
+        Entry(Window window, WindowHandler handler) {
+            this.window = new WeakReference<>(window);
+            this.handler = handler;
+        }
+
+        void attach(Window window) {
+            window.addPropertyChangeListener("title", this);
+            watch(window);
+        }
+
+        void detach(Window window) {
+            window.removePropertyChangeListener("title", this);
+            unwatch(window);
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            invalidate(this);
+        }
+
+        @Override
+        void treeChanged() {
+            invalidate(this);
+        }
+
+    }
+
+}